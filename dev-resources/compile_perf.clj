@@ -0,0 +1,103 @@
+(ns compile-perf
+  "Measures schema compilation time, using generated schemas of various sizes."
+  (:require
+    [com.walmartlabs.lacinia.schema :as schema]))
+
+(defn generate-schema
+  "Generates a schema with the given number of object types (plus an interface for every 20 objects, and
+  an enum for every 50).
+
+  Each object has scalar, enum, and nullable and non-null fields that refer to other objects, forming a
+  densely connected graph of types."
+  [type-count]
+  (let [type-name #(keyword (str "T" (mod % type-count)))
+        interface-name #(keyword (str "I" (quot (mod % type-count) 20)))
+        enum-name #(keyword (str "E" (quot % 50)))
+        interface-fields {:id {:type '(non-null ID)}
+                          :label {:type 'String}}]
+    {:interfaces (into {}
+                       (for [i (range 0 type-count 20)]
+                         [(interface-name i) {:fields interface-fields}]))
+     :enums (into {}
+                  (for [i (range 0 type-count 50)]
+                    [(enum-name i) {:values [:RED :GREEN :BLUE]}]))
+     :objects (into {}
+                    (for [i (range type-count)]
+                      [(type-name i)
+                       {:implements [(interface-name i)]
+                        :fields (merge interface-fields
+                                       {:count {:type 'Int}
+                                        :active {:type '(non-null Boolean)}
+                                        :color {:type (enum-name i)}
+                                        :next {:type (type-name (inc i))}
+                                        :parent {:type (list 'non-null (type-name (* 7 (inc i))))}
+                                        :children {:type (list 'list (list 'non-null (type-name (+ i 13))))
+                                                   :args {:first {:type 'Int
+                                                                  :default-value 10}}}
+                                        :related {:type (list 'non-null (list 'list (interface-name (+ i 31))))}})}]))
+     :queries {:node {:type :T0
+                      :args {:id {:type '(non-null ID)}}
+                      :resolve (constantly nil)}}}))
+
+(defn time-compile
+  "Compiles the schema several times, returning the fastest time, in milliseconds."
+  [input-schema options]
+  (->> (range 3)
+       (map (fn [_]
+              (let [start (System/nanoTime)]
+                (schema/compile input-schema options)
+                (/ (- (System/nanoTime) start) 1e6))))
+       (reduce min)))
+
+(defn bench-compile
+  "Prints compile times for generated schemas of 1,000, 10,000, and 50,000 types,
+  sequentially and in parallel."
+  ([]
+   (bench-compile [1000 10000 50000]))
+  ([sizes]
+   (doseq [type-count sizes
+           :let [input-schema (generate-schema type-count)]]
+     (println (format "%,7d types: %,10.1f ms sequential, %,10.1f ms parallel"
+                      type-count
+                      (time-compile input-schema nil)
+                      (time-compile input-schema {:parallel-compile-threshold 100}))))))
+
+(defn generate-chain-schema
+  "Generates a schema of object types where each type has a nullable field referring to the next type;
+  only the last type has a non-null field, so every type must reach the end of the chain to find it."
+  [type-count]
+  (let [type-name #(keyword (str "C" %))]
+    {:objects (into {}
+                    (for [i (range type-count)]
+                      [(type-name i)
+                       {:fields (if (= i (dec type-count))
+                                  {:id {:type '(non-null ID)}}
+                                  {:id {:type 'ID}
+                                   :next {:type (type-name (inc i))}})}]))
+     :queries {:first {:type :C0
+                       :resolve (constantly nil)}}}))
+
+(defn bench-null-producer-reachability
+  "Prints the time to compile generated chain schemas, and then check every type
+  with [[schema/can-reach-null-producer?]]."
+  ([]
+   (bench-null-producer-reachability [1000 5000 20000]))
+  ([sizes]
+   (doseq [type-count sizes
+           :let [input-schema (generate-chain-schema type-count)]]
+     (println (format "%,7d types: %,10.1f ms"
+                      type-count
+                      (->> (range 3)
+                           (map (fn [_]
+                                  (let [start (System/nanoTime)
+                                        compiled-schema (schema/compile input-schema)]
+                                    (doseq [type-def (vals compiled-schema)
+                                            :when (= :object (:category type-def))]
+                                      (schema/can-reach-null-producer? compiled-schema type-def))
+                                    (/ (- (System/nanoTime) start) 1e6))))
+                           (reduce min)))))))
+
+(comment
+  (bench-compile)
+  (bench-null-producer-reachability)
+  )
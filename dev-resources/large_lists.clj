@@ -19,8 +19,21 @@
                 #(gen/generate (s/gen ::item)))))
 
 
-(def schema (compile-schema "large-lists-schema.edn"
-                            {:resolve-list (constantly large-list)}))
+(def ^:private huge-list
+  (vec
+    (take 50000 (cycle large-list))))
+
+(def ^:private resolvers {:resolve-list (constantly large-list)
+                          :resolve-ages (constantly (mapv :age huge-list))})
+
+(def schema (compile-schema "large-lists-schema.edn" resolvers))
+
+(def huge-schema (compile-schema "large-lists-schema.edn"
+                                 (assoc resolvers :resolve-list (constantly huge-list))))
+
+(def parallel-schema (compile-schema "large-lists-schema.edn"
+                                     (assoc resolvers :resolve-list (constantly huge-list))
+                                     {:parallel-list-threshold 5000}))
 
 (defn bench-mapv
   []
@@ -35,6 +48,20 @@
       (c/bench
         (lacinia/execute-parsed-query parsed nil nil)))))
 
+(defn bench-scalars
+  []
+  (binding [c/*report-progress* true]
+    (let [parsed (parser/parse-query schema "{ ages }")]
+      (c/bench
+        (lacinia/execute-parsed-query parsed nil nil)))))
+
+(defn bench-huge
+  [schema]
+  (binding [c/*report-progress* true]
+    (let [parsed (parser/parse-query schema "{ list { name age id city }}")]
+      (c/bench
+        (lacinia/execute-parsed-query parsed nil nil)))))
+
 (defn bench-parse-and-execute
   []
   (binding [c/*report-progress* true]
@@ -67,5 +94,14 @@
   (bench-parse-and-execute)
   ;; 67.814614 ms -- base line
   ;; -- switch to bench --
+
+  ;; 50,000 Ints
+  (bench-scalars)
+  ;; 15.9 ms -- base line (quick loop, not bench)
+  ;;  9.7 ms -- serialize list of scalars in a single pass
+
+  ;; 50,000 objects, sequential and in parallel chunks of 5,000
+  (bench-huge huge-schema)
+  (bench-huge parallel-schema)
   )
 
@@ -69,37 +69,10 @@
                        :disable-java-objects? true})))
 
 ;; A schema to measure the performance of errors
-(def planets-schema
-  (let [planet-data [{:name "Mercury"}
-                     {:name "Venus"}
-                     {:name "Earth"
-                      :moons [{:name "Luna"
-                               :bases [{:name "Alpha"}
-                                       {:name "Moon 1"}
-                                       {:name "月基地图"}]}]}
-                     {:name "Mars"
-                      :moons [{:name "Phobos"}
-                              {:name "Deimos"}]}
-                     {:name "Asteroid Belt"
-                      :moons (for [i (range 1 101)]
-                               {:name (str "Asteroid " i)
-                                :bases [{:name "Pad"
-                                         :destroyed? true}]})}
-                     {:name "Jupiter"
-                      :moons [{:name "Europa"
-                               :bases [{:name "Beta"
-                                        :alien? true}]}
-                              {:name "Ganymede"}
-                              {:name "Callisto"
-                               :bases [{:name "Gamma"}]}]}
-                     {:name "Saturn"
-                      :moons [{:name "Dione"}
-                              {:name "Tethys"}
-                              {:name "Titan"
-                               :bases [{:name "Omega"}]}]}
-                     {:name "Saturn"}
-                     {:name "Uranus"}]
-        resolvers {:base-name (fn [_ _ base]
+
+(defn ^:private compile-planets-schema
+  [planet-data]
+  (let [resolvers {:base-name (fn [_ _ base]
                                 (resolve-as (:name base)
                                   (cond
                                     (:alien? base)
@@ -132,6 +105,62 @@
         (util/attach-resolvers resolvers)
         schema/compile)))
 
+(def planets-schema
+  (compile-planets-schema
+    [{:name "Mercury"}
+     {:name "Venus"}
+     {:name "Earth"
+      :moons [{:name "Luna"
+               :bases [{:name "Alpha"}
+                       {:name "Moon 1"}
+                       {:name "月基地图"}]}]}
+     {:name "Mars"
+      :moons [{:name "Phobos"}
+              {:name "Deimos"}]}
+     {:name "Asteroid Belt"
+      :moons (for [i (range 1 101)]
+               {:name (str "Asteroid " i)
+                :bases [{:name "Pad"
+                         :destroyed? true}]})}
+     {:name "Jupiter"
+      :moons [{:name "Europa"
+               :bases [{:name "Beta"
+                        :alien? true}]}
+              {:name "Ganymede"}
+              {:name "Callisto"
+               :bases [{:name "Gamma"}]}]}
+     {:name "Saturn"
+      :moons [{:name "Dione"}
+              {:name "Tethys"}
+              {:name "Titan"
+               :bases [{:name "Omega"}]}]}
+     {:name "Saturn"}
+     {:name "Uranus"}]))
+
+;; Mass partial failure: every base has been destroyed (and has no name), so each
+;; produces a resolver error and then a non-null violation, which checks for an
+;; existing error at the same path.
+
+(def ^:private mass-failure-moon-count 5000)
+
+(def mass-failures-schema
+  (compile-planets-schema
+    [{:name "Asteroid Belt"
+      :moons (for [i (range mass-failure-moon-count)]
+               {:name (str "Asteroid " i)
+                :bases [{:destroyed? true}]})}]))
+
+(def ^:private mass-failures-expected
+  {:data {:planets [{:name "Asteroid Belt"
+                     :moons (for [i (range mass-failure-moon-count)]
+                              {:name (str "Asteroid " i)
+                               :bases [nil]})}]}
+   :errors (for [i (range mass-failure-moon-count)]
+             {:message "This base has been destroyed."
+              :locations [{:line 1
+                           :column 39}]
+              :path [:planets 0 :moons i :bases 0 :name]})})
+
 ;; This is the standard introspection query that graphiql
 ;; executes to build the client-side UI.
 
@@ -384,7 +413,13 @@
    ;; due to the fix that put indexes into the path
    {:query "{ planets { name moons { name bases { name }}}}"
     :schema planets-schema
-    :expected (read-edn "errors.edn")}})
+    :expected (read-edn "errors.edn")}
+
+   :mass-failures
+   ;; Many errors, each of which must be checked against the errors collected so far.
+   {:query "{ planets { name moons { name bases { name }}}}"
+    :schema mass-failures-schema
+    :expected mass-failures-expected}})
 
 (defmacro ^:private benchmark [expr]
   `(-> ~expr
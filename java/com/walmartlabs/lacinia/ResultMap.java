@@ -0,0 +1,252 @@
+package com.walmartlabs.lacinia;
+
+import clojure.lang.APersistentMap;
+import clojure.lang.ASeq;
+import clojure.lang.Counted;
+import clojure.lang.IDeref;
+import clojure.lang.IFn;
+import clojure.lang.IKVReduce;
+import clojure.lang.IMapEntry;
+import clojure.lang.IMapIterable;
+import clojure.lang.IObj;
+import clojure.lang.IPersistentCollection;
+import clojure.lang.IPersistentMap;
+import clojure.lang.ISeq;
+import clojure.lang.MapEntry;
+import clojure.lang.RT;
+import clojure.lang.Util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map of selected values, used for the results of query execution.
+ * Keys and values are stored in parallel arrays, in query order; the keys array is
+ * computed once, when the query is parsed, and shared by every result for the same selection set.
+ * Lookups are a linear scan, which is efficient for the small number of keys typical of
+ * a selection set.
+ */
+public final class ResultMap extends APersistentMap implements IObj, IKVReduce, IMapIterable {
+
+  public static final ResultMap EMPTY = new ResultMap(null, new Object[0], new Object[0]);
+
+  private final IPersistentMap meta;
+  private final Object[] keys;
+  private final Object[] vals;
+
+  /**
+   * The keys array may be shared between instances, and must not be modified after construction.
+   * The vals array is owned by the new instance.
+   */
+  public ResultMap(final Object[] keys, final Object[] vals) {
+    this(null, keys, vals);
+  }
+
+  private ResultMap(final IPersistentMap meta, final Object[] keys, final Object[] vals) {
+    this.meta = meta;
+    this.keys = keys;
+    this.vals = vals;
+  }
+
+  private int indexOf(final Object key) {
+    // Keys are almost always keywords, which are interned.
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+
+    for (int i = 0; i < keys.length; i++) {
+      if (Util.equiv(keys[i], key)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  public IPersistentMap meta() {
+    return meta;
+  }
+
+  public ResultMap withMeta(final IPersistentMap meta) {
+    if (meta == this.meta) {
+      return this;
+    }
+
+    return new ResultMap(meta, keys, vals);
+  }
+
+  public int count() {
+    return keys.length;
+  }
+
+  public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  public IMapEntry entryAt(final Object key) {
+    final int i = indexOf(key);
+
+    return i < 0 ? null : MapEntry.create(keys[i], vals[i]);
+  }
+
+  public Object valAt(final Object key) {
+    return valAt(key, null);
+  }
+
+  public Object valAt(final Object key, final Object notFound) {
+    final int i = indexOf(key);
+
+    return i < 0 ? notFound : vals[i];
+  }
+
+  public IPersistentMap assoc(final Object key, final Object val) {
+    final int i = indexOf(key);
+
+    if (i >= 0) {
+      if (vals[i] == val) {
+        return this;
+      }
+
+      final Object[] newVals = vals.clone();
+      newVals[i] = val;
+
+      return new ResultMap(meta, keys, newVals);
+    }
+
+    // New keys are added at the end, preserving order.
+    final int n = keys.length;
+    final Object[] newKeys = new Object[n + 1];
+    final Object[] newVals = new Object[n + 1];
+
+    System.arraycopy(keys, 0, newKeys, 0, n);
+    System.arraycopy(vals, 0, newVals, 0, n);
+    newKeys[n] = key;
+    newVals[n] = val;
+
+    return new ResultMap(meta, newKeys, newVals);
+  }
+
+  public IPersistentMap assocEx(final Object key, final Object val) {
+    if (containsKey(key)) {
+      throw Util.runtimeException("Key already present");
+    }
+
+    return assoc(key, val);
+  }
+
+  public IPersistentMap without(final Object key) {
+    final int i = indexOf(key);
+
+    if (i < 0) {
+      return this;
+    }
+
+    final int n = keys.length - 1;
+    final Object[] newKeys = new Object[n];
+    final Object[] newVals = new Object[n];
+
+    System.arraycopy(keys, 0, newKeys, 0, i);
+    System.arraycopy(vals, 0, newVals, 0, i);
+    System.arraycopy(keys, i + 1, newKeys, i, n - i);
+    System.arraycopy(vals, i + 1, newVals, i, n - i);
+
+    return new ResultMap(meta, newKeys, newVals);
+  }
+
+  public IPersistentCollection empty() {
+    return EMPTY.withMeta(meta);
+  }
+
+  public Object kvreduce(final IFn f, Object init) {
+    for (int i = 0; i < keys.length; i++) {
+      init = f.invoke(init, keys[i], vals[i]);
+
+      if (RT.isReduced(init)) {
+        return ((IDeref) init).deref();
+      }
+    }
+
+    return init;
+  }
+
+  public ISeq seq() {
+    return keys.length == 0 ? null : new Seq(null, keys, vals, 0);
+  }
+
+  private abstract class ArrayIterator implements Iterator {
+    private int i = 0;
+
+    public boolean hasNext() {
+      return i < keys.length;
+    }
+
+    public Object next() {
+      if (i >= keys.length) {
+        throw new NoSuchElementException();
+      }
+
+      return get(i++);
+    }
+
+    abstract Object get(int i);
+  }
+
+  public Iterator iterator() {
+    return new ArrayIterator() {
+      Object get(final int i) {
+        return MapEntry.create(keys[i], vals[i]);
+      }
+    };
+  }
+
+  public Iterator keyIterator() {
+    return new ArrayIterator() {
+      Object get(final int i) {
+        return keys[i];
+      }
+    };
+  }
+
+  public Iterator valIterator() {
+    return new ArrayIterator() {
+      Object get(final int i) {
+        return vals[i];
+      }
+    };
+  }
+
+  static final class Seq extends ASeq implements Counted {
+    private final Object[] keys;
+    private final Object[] vals;
+    private final int i;
+
+    Seq(final IPersistentMap meta, final Object[] keys, final Object[] vals, final int i) {
+      super(meta);
+      this.keys = keys;
+      this.vals = vals;
+      this.i = i;
+    }
+
+    public Object first() {
+      return MapEntry.create(keys[i], vals[i]);
+    }
+
+    public ISeq next() {
+      return i + 1 < keys.length ? new Seq(null, keys, vals, i + 1) : null;
+    }
+
+    public int count() {
+      return keys.length - i;
+    }
+
+    public Seq withMeta(final IPersistentMap meta) {
+      if (meta == meta()) {
+        return this;
+      }
+
+      return new Seq(meta, keys, vals, i);
+    }
+  }
+}
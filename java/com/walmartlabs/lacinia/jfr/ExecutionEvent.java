@@ -0,0 +1,22 @@
+package com.walmartlabs.lacinia.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.walmartlabs.lacinia.Execution")
+@Label("GraphQL Execution")
+@Category("Lacinia")
+@Description("Execution of a prepared query, through to delivery of the result map.")
+public class ExecutionEvent extends Event {
+  @Label("Operation Name")
+  public String operationName;
+
+  @Label("Operation Type")
+  public String operationType;
+
+  @Label("Error Count")
+  public int errorCount;
+}
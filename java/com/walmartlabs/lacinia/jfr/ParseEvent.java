@@ -0,0 +1,16 @@
+package com.walmartlabs.lacinia.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.walmartlabs.lacinia.Parse")
+@Label("GraphQL Parse")
+@Category("Lacinia")
+@Description("Parsing of a GraphQL query document against a compiled schema.")
+public class ParseEvent extends Event {
+  @Label("Operation Name")
+  public String operationName;
+}
@@ -0,0 +1,16 @@
+package com.walmartlabs.lacinia.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.walmartlabs.lacinia.Prepare")
+@Label("GraphQL Prepare")
+@Category("Lacinia")
+@Description("Application of query variables to a parsed query.")
+public class PrepareEvent extends Event {
+  @Label("Operation Name")
+  public String operationName;
+}
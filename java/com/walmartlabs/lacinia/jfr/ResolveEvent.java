@@ -0,0 +1,34 @@
+package com.walmartlabs.lacinia.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Covers the invocation of a field resolver through to delivery of its value; for an asynchronous
+ * field resolver, the event begins and ends on different threads.
+ * Disabled by default, because of the volume of events.
+ */
+@Name("com.walmartlabs.lacinia.Resolve")
+@Label("GraphQL Field Resolve")
+@Category("Lacinia")
+@Enabled(false)
+@Description("Invocation of a field resolver, through to delivery of its resolved value.")
+public class ResolveEvent extends Event {
+  @Label("Operation Name")
+  public String operationName;
+
+  @Label("Field Name")
+  @Description("Qualified field name, e.g. Query/hero.")
+  public String fieldName;
+
+  @Label("Path")
+  @Description("Path to the field within the result data.")
+  public String path;
+
+  @Label("Failed")
+  public boolean failed;
+}
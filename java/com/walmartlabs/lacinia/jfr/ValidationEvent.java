@@ -0,0 +1,19 @@
+package com.walmartlabs.lacinia.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.walmartlabs.lacinia.Validation")
+@Label("GraphQL Validation")
+@Category("Lacinia")
+@Description("Validation of a prepared query.")
+public class ValidationEvent extends Event {
+  @Label("Operation Name")
+  public String operationName;
+
+  @Label("Error Count")
+  public int errorCount;
+}
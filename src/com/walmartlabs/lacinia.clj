@@ -16,8 +16,11 @@
   (:require [com.walmartlabs.lacinia.parser :as parser]
             [com.walmartlabs.lacinia.constants :as constants]
             [com.walmartlabs.lacinia.executor :as executor]
+            [com.walmartlabs.lacinia.instrumentation :as instrumentation]
+            [com.walmartlabs.lacinia.introspection :as introspection]
+            [com.walmartlabs.lacinia.schema :as schema]
             [com.walmartlabs.lacinia.validator :as validator]
-            [com.walmartlabs.lacinia.internal-utils :refer [cond-let]]
+            [com.walmartlabs.lacinia.internal-utils :refer [cond-let get-nested]]
             [com.walmartlabs.lacinia.util :refer [as-error-map]]
             [com.walmartlabs.lacinia.resolve :as resolve]
             [com.walmartlabs.lacinia.tracing :as tracing])
@@ -39,27 +42,95 @@
              (map? context))]}
   (cond-let
     :let [{:keys [::tracing/timing-start]} parsed-query
+          listener (get-nested parsed-query [constants/schema-key ::schema/options :instrumentation])
           ;; Validation phase encompasses preparing with query variables and actual validation.
           ;; It's somewhat all mixed together.
           start-offset (tracing/offset-from-start timing-start)
           start-nanos (System/nanoTime)
+          prepare #(parser/prepare-with-query-variables parsed-query variables)
           [prepared error-result] (try
-                                    [(parser/prepare-with-query-variables parsed-query variables)]
+                                    [(if (some? listener)
+                                       (instrumentation/invoke-instrumented listener :prepare
+                                                                            {:parsed-query parsed-query
+                                                                             :variables variables}
+                                                                            prepare :parsed-query)
+                                       (prepare))]
                                     (catch Exception e
                                       [nil (as-errors e)]))]
 
     (some? error-result)
     (resolve/resolve-as error-result)
 
-    :let [validation-errors (validator/validate prepared)]
+    :let [schema (get prepared constants/schema-key)
+          ;; The result of a query that selects only introspection fields depends only on the schema and the query,
+          ;; unless tracing or instrumentation observe the execution, or part of the result is delivered incrementally.
+          introspection-key (when (and (nil? listener)
+                                       (not (::tracing/enabled? context))
+                                       (not (contains? context ::executor/incremental))
+                                       (introspection/introspection-query? prepared))
+                              (parser/query-key prepared))
+          cached-result (when introspection-key
+                          (introspection/cached-result schema introspection-key))]
+
+    ;; Only the results of valid queries are cached, so validation is skipped.
+    (some? cached-result)
+    (resolve/resolve-as cached-result)
+
+    :let [validate #(validator/validate prepared)
+          validation-errors (if (some? listener)
+                              (instrumentation/invoke-instrumented listener :validate
+                                                                   {:parsed-query prepared}
+                                                                   validate :errors)
+                              (validate))]
 
     (seq validation-errors)
     (resolve/resolve-as {:errors validation-errors})
 
+    :let [result (executor/execute-query (assoc context constants/parsed-query-key prepared
+                                                        ::tracing/validation {:start-offset start-offset
+                                                                              :duration (tracing/duration start-nanos)}))]
+
+    (some? introspection-key)
+    (let [result' (resolve/resolve-promise)]
+      (resolve/on-deliver! result
+                           (fn [result-map]
+                             (when (and (map? result-map)
+                                        (not (contains? result-map :errors)))
+                               (introspection/cache-result! schema introspection-key result-map))
+                             (resolve/deliver! result' result-map)))
+      result')
+
     :else
-    (executor/execute-query (assoc context constants/parsed-query-key prepared
-                                           ::tracing/validation {:start-offset start-offset
-                                                                 :duration (tracing/duration start-nanos)}))))
+    result))
+
+(defn execute-parsed-query-incremental
+  "Prepares and executes a query, as with [[execute-parsed-query-async]], honoring the
+  `@defer` (on fragments) and `@stream` (on list fields) directives.
+
+  The on-payload callback is invoked with the initial result map; when work has been deferred,
+  it includes the key :hasNext, with value true. Each subsequent payload is a map with keys
+  :incremental and :hasNext; :incremental is a vector of maps, each with a :path, optional
+  :label and :errors, and either :data (for a deferred fragment) or :items (for streamed list elements).
+  The final payload has :hasNext false.
+
+  Subsequent payloads may arrive in any order, as deferred work completes; calls to on-payload
+  are never concurrent.
+
+  When a query is executed without incremental delivery, as with [[execute]], the `@defer`
+  and `@stream` directives are ignored.
+
+  Returns nil."
+  {:added "1.3"}
+  [parsed-query variables context on-payload]
+  (let [context' (executor/enable-incremental-delivery context)]
+    (resolve/on-deliver! (execute-parsed-query-async parsed-query variables context')
+                         (fn [result]
+                           (executor/deliver-incremental context'
+                                                         (if (instance? Throwable result)
+                                                           (as-errors result)
+                                                           result)
+                                                         on-payload)))
+    nil))
 
 (defn execute-parsed-query
   "Prepares a query, by applying query variables to it, resulting in a prepared
@@ -76,14 +147,24 @@
          {:keys [timeout-ms timeout-error]
           :or {timeout-ms 0
                timeout-error {:message "Query execution timed out."}}} options
-         execution-result (execute-parsed-query-async parsed-query variables context)
+         timeout? (pos? timeout-ms)
+         ;; With a timeout, the execution is cancelled if the timeout occurs, so that it does not
+         ;; continue to consume threads and resources. An existing cancellation signal is respected.
+         context' (if (and timeout?
+                           (not (contains? context constants/cancel-signal-key)))
+                    (executor/enable-cancellation context)
+                    context)
+         execution-result (execute-parsed-query-async parsed-query variables context')
          result (do
                   (resolve/on-deliver! execution-result *result)
                   ;; Block on that deliver, then return the final result.
-                  (if (pos? timeout-ms)
-                    (deref *result
-                           timeout-ms
-                           {:errors [timeout-error]})
+                  (if timeout?
+                    (let [result (deref *result timeout-ms ::timed-out)]
+                      (if (identical? ::timed-out result)
+                        (do
+                          (executor/cancel! context')
+                          {:errors [timeout-error]})
+                        result))
                     @*result))]
      (when (instance? Throwable result)
        (throw result))
@@ -122,6 +203,8 @@
 
   :timeout-ms
   : Timeout for the operation.  Defaults to 0, for no timeout at all.
+    When the timeout occurs, execution of the query is cancelled
+    (see [[com.walmartlabs.lacinia.executor/cancelled?]]).
 
   :timeout-error
   : Error map used if a timeout occurs.
@@ -0,0 +1,288 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.backpressure
+  "Regulates the flow of values from a subscription's source stream into query executions.
+
+  A regulated source stream executes at most one value at a time; values that arrive while an
+  execution is in progress are held according to a strategy, and may be coalesced or dropped.
+
+  Options:
+
+  :strategy
+  : Either :latest (the default) or :buffer.
+
+    With :latest, only the most recent pending value is kept; earlier pending values are coalesced into it.
+
+    With :buffer, up to :buffer-size values are kept, in order; when the buffer is full, the :overflow
+    policy determines which value is dropped.
+
+  :buffer-size
+  : The maximum number of pending values for the :buffer strategy, defaults to 16.
+
+  :overflow
+  : Either :drop-oldest (the default) or :drop-newest."
+  {:added "1.3"}
+  (:require
+    [clojure.spec.alpha :as s]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.executor :as executor]
+    [com.walmartlabs.lacinia.resolve :as resolve])
+  (:import
+    (clojure.lang IFn PersistentQueue)
+    (java.util.concurrent Flow$Publisher Flow$Subscriber Flow$Subscription)))
+
+(s/def ::strategy #{:latest :buffer})
+(s/def ::buffer-size pos-int?)
+(s/def ::overflow #{:drop-oldest :drop-newest})
+(s/def ::options (s/nilable (s/keys :opt-un [::strategy ::buffer-size ::overflow])))
+
+(defprotocol StreamMetrics
+
+  (metrics [this]
+    "Returns a map of counts for a regulated stream:
+
+    :executed
+    : Values that have been (or are being) executed.
+
+    :coalesced
+    : Values replaced by a later value, by the :latest strategy.
+
+    :dropped
+    : Values discarded because the buffer was full.
+
+    :pending
+    : Values waiting to be executed."))
+
+(defn ^:private enqueue
+  [state value {:keys [strategy buffer-size overflow]}]
+  (let [{:keys [pending]} state]
+    (if (= :buffer strategy)
+      (cond
+        (< (count pending) buffer-size)
+        (update state :pending conj value)
+
+        (= :drop-newest overflow)
+        (update state :dropped inc)
+
+        :else
+        (-> state
+            (update :pending #(conj (pop %) value))
+            (update :dropped inc)))
+      (if (seq pending)
+        (-> state
+            (assoc :pending (conj PersistentQueue/EMPTY value))
+            (update :coalesced inc))
+        (update state :pending conj value)))))
+
+(defn ^:private next-action
+  "Determines the next action, updating the state to reflect it."
+  [*state]
+  (locking *state
+    (let [{:keys [pending in-flight? demand closed? completed? cancelled?]} @*state]
+      (cond
+        (or in-flight? completed? cancelled?)
+        nil
+
+        (and (seq pending)
+             (pos? demand))
+        (do
+          (swap! *state #(-> %
+                             (update :pending pop)
+                             (assoc :in-flight? true)
+                             (update :executed inc)
+                             (update :demand (fn [d]
+                                               (if (= Long/MAX_VALUE d) d (dec d))))))
+          [:execute (peek pending)])
+
+        (and closed? (empty? pending))
+        (do
+          (swap! *state assoc :completed? true)
+          [:complete])))))
+
+(defn ^:private drain!
+  [*state execute on-result on-complete]
+  (let [[action value] (next-action *state)]
+    (case action
+      :execute
+      (let [result (try
+                     (execute value)
+                     (catch Throwable t
+                       (swap! *state assoc :in-flight? false)
+                       (throw t)))]
+        (resolve/on-deliver! result
+                             (fn [result-map]
+                               (when-not (:cancelled? @*state)
+                                 (on-result result-map))
+                               (swap! *state assoc :in-flight? false)
+                               (drain! *state execute on-result on-complete))))
+
+      :complete
+      (on-complete)
+
+      nil)))
+
+(defn ^:private initial-state
+  [demand]
+  {:pending PersistentQueue/EMPTY
+   :demand demand
+   :in-flight? false
+   :closed? false
+   :completed? false
+   :cancelled? false
+   :executed 0
+   :coalesced 0
+   :dropped 0})
+
+(defn ^:private normalize-options
+  [options]
+  (merge {:strategy :latest
+          :buffer-size 16
+          :overflow :drop-oldest}
+         options))
+
+(defn ^:private state-metrics
+  [state]
+  (-> state
+      (select-keys [:executed :coalesced :dropped])
+      (assoc :pending (count (:pending state)))))
+
+(deftype ^:private RegulatedSourceStream [*state options execute on-result on-complete]
+
+  IFn
+
+  (invoke [this value]
+    (cond
+      (:cancelled? @*state)
+      nil
+
+      (nil? value)
+      (do
+        (swap! *state assoc :closed? true)
+        (drain! *state execute on-result on-complete))
+
+      ;; For compatibility reasons, the value may be a ResolverResult.
+      (resolve/is-resolver-result? value)
+      (resolve/on-deliver! value this)
+
+      :else
+      (do
+        (locking *state
+          (swap! *state enqueue value options))
+        (drain! *state execute on-result on-complete)))
+    nil)
+
+  StreamMetrics
+
+  (metrics [_]
+    (state-metrics @*state)))
+
+(defn source-stream
+  "Returns a source stream callback, to be passed to a streamer, that regulates the
+  flow of values into executions.
+
+  execute is passed each value to be executed, and returns a ResolverResult that delivers
+  the result map; on-result is passed each result map, and then nil once the source stream is closed
+  and all pending values have been executed.
+
+  The returned source stream also implements [[StreamMetrics]]."
+  [options execute on-result]
+  (s/assert ::options options)
+  (RegulatedSourceStream. (atom (initial-state Long/MAX_VALUE))
+                          (normalize-options options)
+                          execute
+                          on-result
+                          #(on-result nil)))
+
+(defn ^:private subscription-execute
+  [context]
+  (fn [value]
+    (executor/execute-query (assoc context ::executor/resolved-value value))))
+
+(defn publisher
+  "Returns a java.util.concurrent.Flow$Publisher of the result maps of the subscription in the context
+  (the prepared query, stored in the context as with [[com.walmartlabs.lacinia.executor/execute-query]]).
+
+  The subscription's streamer is invoked when a subscriber subscribes to the publisher; a publisher
+  supports only a single subscriber.
+
+  Values from the source stream are executed only when the subscriber has requested results;
+  until then, values are held according to the options.
+
+  The subscriber's onComplete method is invoked when the source stream is closed and all pending values have been
+  delivered; cancelling the subscription, or completion, invokes the streamer's cleanup function.
+
+  The publisher also implements [[StreamMetrics]]."
+  [context options]
+  (s/assert ::options options)
+  (assert (= :subscription (get-in context [constants/parsed-query-key :operation-type])))
+  (let [options' (normalize-options options)
+        *state (atom (initial-state 0))
+        *subscribed? (atom false)
+        *done? (atom false)
+        *cleaned-up? (atom false)
+        *cleanup (promise)
+        ;; Invoked once the subscription is cancelled or complete, and the streamer has returned.
+        cleanup! (fn []
+                   (when (and @*done?
+                              (realized? *cleanup)
+                              (compare-and-set! *cleaned-up? false true))
+                     (when-let [cleanup @*cleanup]
+                       (cleanup))))
+        finish! (fn []
+                  (reset! *done? true)
+                  (cleanup!))]
+    (reify
+
+      Flow$Publisher
+
+      (subscribe [_ subscriber]
+        (let [^Flow$Subscriber subscriber subscriber]
+          (if-not (compare-and-set! *subscribed? false true)
+            (.onError subscriber (IllegalStateException. "This publisher supports only a single subscriber."))
+            (let [execute (subscription-execute context)
+                  on-result #(.onNext subscriber %)
+                  on-complete (fn []
+                                (.onComplete subscriber)
+                                (finish!))
+                  stream (RegulatedSourceStream. *state options' execute on-result on-complete)]
+              (.onSubscribe subscriber
+                            (reify Flow$Subscription
+
+                              (request [_ n]
+                                (if (pos? n)
+                                  (do
+                                    (locking *state
+                                      (swap! *state update :demand #(if (< (- Long/MAX_VALUE %) n)
+                                                                      Long/MAX_VALUE
+                                                                      (+ % n))))
+                                    (drain! *state execute on-result on-complete))
+                                  (do
+                                    (swap! *state assoc :cancelled? true)
+                                    (.onError subscriber (IllegalArgumentException. "Requested demand must be positive."))
+                                    (finish!))))
+
+                              (cancel [_]
+                                (swap! *state #(-> %
+                                                   (assoc :cancelled? true)
+                                                   (assoc :pending PersistentQueue/EMPTY)))
+                                (finish!))))
+              (deliver *cleanup (executor/invoke-streamer context stream))
+              ;; The subscription may have been cancelled, or the stream completed, before the streamer returned.
+              (cleanup!)))))
+
+      StreamMetrics
+
+      (metrics [_]
+        (state-metrics @*state)))))
@@ -26,3 +26,20 @@
 (def ^{:added "0.17.0"} selection-key
   "Context key storing the current selection."
   :com.walmartlabs.lacinia/selection)
+
+(def ^{:added "1.3"} cancel-signal-key
+  "Context key storing the cancellation signal (an Atom containing a boolean) for the current request."
+  :com.walmartlabs.lacinia/cancel-signal)
+
+(def ^{:added "1.3"} look-ahead-key
+  "Parsed query metadata key storing the cache of look-ahead views of its selections (see executor/selections-tree),
+  and of its query key (see parser/query-key).
+
+  As metadata, the cache does not affect equality or printing of the parsed query. It holds at most
+  one entry per field selection of the query, plus the query key."
+  ::look-ahead)
+
+(def ^{:added "1.3"} cache-tags-key
+  "Context key storing the cache tags (an Atom containing a set) collected while executing a request
+  for the response cache."
+  :com.walmartlabs.lacinia/cache-tags)
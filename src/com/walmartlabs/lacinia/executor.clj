@@ -15,20 +15,25 @@
 (ns com.walmartlabs.lacinia.executor
   "Mechanisms for executing parsed queries against compiled schemas."
   (:require
+    [clojure.set :as set]
     [com.walmartlabs.lacinia.internal-utils
      :refer [cond-let q to-message
              deep-merge keepv get-nested]]
     [flatland.ordered.map :refer [ordered-map]]
     [com.walmartlabs.lacinia.select-utils :as su]
-    [com.walmartlabs.lacinia.resolve-utils :refer [transform-result aggregate-results]]
+    [com.walmartlabs.lacinia.resolve-utils :refer [transform-result aggregate-results shared-result deliver-shared!]]
     [com.walmartlabs.lacinia.schema :as schema]
     [com.walmartlabs.lacinia.resolve :as resolve
      :refer [resolve-as resolve-promise]]
     [com.walmartlabs.lacinia.tracing :as tracing]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
     [com.walmartlabs.lacinia.constants :as constants]
     [com.walmartlabs.lacinia.selection :as selection])
   (:import (clojure.lang PersistentQueue)
-           (java.util.concurrent Executor)))
+           (com.walmartlabs.lacinia ResultMap)
+           (com.walmartlabs.lacinia.resolve ResolverResultImpl)
+           (java.util.concurrent ConcurrentHashMap ConcurrentLinkedQueue Executor Semaphore)
+           (java.util.concurrent.atomic AtomicBoolean)))
 
 (def ^:private empty-ordered-map (ordered-map))
 
@@ -65,6 +70,71 @@
                         {:type container-type
                          :value container-value})))))
 
+(defn ^:private invoke-traced-resolver
+  "Invokes the field resolver, recording its timing into the resolver tracing collector."
+  [execution-context *resolver-tracing field-resolver resolve-context arguments field-selection path container-type container-value]
+  (let [start-offset (tracing/offset-from-start (:timing-start execution-context))
+        start-nanos (System/nanoTime)
+        resolver-result (field-resolver resolve-context arguments container-value)
+        record-timing (fn []
+                        (let [duration (tracing/duration start-nanos)
+                              {:keys [field-definition]} field-selection
+                              {:keys [field-name type-string]} field-definition]
+                          (tracing/add-resolver-timing! *resolver-tracing
+                                                        {:path path
+                                                         :parentType container-type
+                                                         :fieldName field-name
+                                                         :returnType type-string
+                                                         :startOffset start-offset
+                                                         :duration duration})))]
+    ;; A synchronous resolver has already completed. Otherwise, we need to create an extra
+    ;; promise so that we can observe the delivery of the value to update our timing
+    ;; information. The downside is that collecting timing information affects timing.
+    (if (instance? ResolverResultImpl resolver-result)
+      (do
+        (record-timing)
+        resolver-result)
+      (transform-result resolver-result
+                        (fn [resolved-value]
+                          (record-timing)
+                          resolved-value)))))
+
+(defn ^:private resolve-outcome
+  "Builds the outcome passed to an instrumentation listener when a field resolver completes,
+  extracting any errors from wrapped values."
+  [resolved-value]
+  (loop [value resolved-value
+         errors nil]
+    (if (su/is-wrapped-value? value)
+      (recur (:value value)
+             (if (= :error (:behavior value))
+               (conj (or errors []) (:data value))
+               errors))
+      (cond-> {:value value}
+        errors (assoc :errors errors)))))
+
+(defn ^:private invoke-instrumented-resolver
+  "Reports the invocation of a field resolver to the instrumentation listener; f invokes the field resolver
+  and returns its ResolverResult."
+  [listener f resolve-context arguments field-selection path]
+  (let [state (instrumentation/begin listener :resolve {:field-name (get-nested field-selection [:field-definition :qualified-name])
+                                                        :path path
+                                                        :arguments arguments
+                                                        :context resolve-context})
+        resolver-result (try
+                          (f)
+                          (catch Throwable t
+                            (instrumentation/end listener :resolve state {:exception t})
+                            (throw t)))]
+    (if (instance? ResolverResultImpl resolver-result)
+      (do
+        (instrumentation/end listener :resolve state (resolve-outcome (:resolved-value resolver-result)))
+        resolver-result)
+      (transform-result resolver-result
+                        (fn [resolved-value]
+                          (instrumentation/end listener :resolve state (resolve-outcome resolved-value))
+                          resolved-value)))))
+
 (defn ^:private invoke-resolver-for-field
   "Resolves the value for a field selection node.
 
@@ -72,38 +142,29 @@
 
   Optionally updates the timings inside the execution-context with start/finish/elapsed time
   (in milliseconds). Timing checks only occur when enabled (timings is non-nil)
-  and not for default resolvers."
+  and not for default resolvers.
+
+  Likewise, the invocation is reported to the instrumentation listener, if any."
   [execution-context field-selection path container-type container-value]
   (try
-    (let [*resolver-tracing (:*resolver-tracing execution-context)
+    (let [{:keys [*resolver-tracing instrumentation]} execution-context
           arguments (selection/arguments field-selection)
           {:keys [context schema]} execution-context
           resolve-context (assoc context
                                  :com.walmartlabs.lacinia/container-type-name container-type
                                  constants/selection-key field-selection)
           field-resolver (field-selection-resolver schema field-selection container-type container-value)]
-      (if-not (some? *resolver-tracing)
+      (if (and (nil? *resolver-tracing)
+               (nil? instrumentation))
         (field-resolver resolve-context arguments container-value)
-        (let [start-offset (tracing/offset-from-start (:timing-start execution-context))
-              start-nanos (System/nanoTime)
-              resolver-result (field-resolver resolve-context arguments container-value)]
-          ;; If not collecting tracing results, then the resolver-result is all we need.
-          ;; Otherwise, we need to create an extra promise so that we can observe the
-          ;; delivery of the value to update our timing information. The downside is
-          ;; that collecting timing information affects timing.
-          (transform-result resolver-result
-                            (fn [resolved-value]
-                              (let [duration (tracing/duration start-nanos)
-                                    {:keys [field-definition]} field-selection
-                                    {:keys [field-name type-string]} field-definition]
-                                (swap! *resolver-tracing conj
-                                       {:path path
-                                        :parentType container-type
-                                        :fieldName field-name
-                                        :returnType type-string
-                                        :startOffset start-offset
-                                        :duration duration}))
-                              resolved-value)))))
+        (let [f (fn []
+                  (if (some? *resolver-tracing)
+                    (invoke-traced-resolver execution-context *resolver-tracing field-resolver resolve-context arguments
+                                            field-selection path container-type container-value)
+                    (field-resolver resolve-context arguments container-value)))]
+          (if (some? instrumentation)
+            (invoke-instrumented-resolver instrumentation f resolve-context arguments field-selection path)
+            (f)))))
     (catch Throwable t
       (let [field-name (get-nested field-selection [:field-definition :qualified-name])
             {:keys [location]} field-selection
@@ -118,19 +179,198 @@
                          :path path}
                         t))))))
 
+(defn ^:private drain-pending
+  "Starts pending work while permits are available.
+
+  start! is passed each item polled from the pending queue, and returns true if the
+  work completed synchronously (in which case the permit is immediately released),
+  or false if the permit will be released later."
+  [^Semaphore permits ^ConcurrentLinkedQueue pending start!]
+  (loop []
+    (when (.tryAcquire permits)
+      (if-some [item (.poll pending)]
+        (do
+          (when (start! item)
+            (.release permits))
+          (recur))
+        (do
+          (.release permits)
+          ;; Another thread may have queued work after the poll, but before the release.
+          (when-not (.isEmpty pending)
+            (recur)))))))
+
+(defn ^:private bounded-executor
+  "Wraps an Executor such that at most limit tasks, submitted through the wrapper, are
+  queued or running in the delegate Executor at any one time.  Additional tasks are
+  queued locally, and released to the delegate as earlier tasks complete.
+
+  If the delegate rejects a task, its exception is rethrown and the task's permit released."
+  ^Executor [^Executor delegate limit]
+  (let [permits (Semaphore. (int limit))
+        pending (ConcurrentLinkedQueue.)]
+    (letfn [(drain []
+              (drain-pending permits pending
+                             (fn [^Runnable task]
+                               (try
+                                 (.execute delegate
+                                           (fn []
+                                             (try
+                                               (.run task)
+                                               (finally
+                                                 (.release permits)
+                                                 (drain)))))
+                                 (catch Throwable t
+                                   ;; The delegate rejected the task, so it will never run and release its permit.
+                                   (.release permits)
+                                   (throw t)))
+                               false)))]
+      (reify Executor
+        (execute [_ task]
+          (.offer pending task)
+          (drain))))))
+
+;; Tracks outstanding asynchronous field resolver invocations for a single request.
+;; A permit is held from when the field resolver is invoked until its ResolverResultPromise
+;; is delivered.
+;; fail! is passed an exception thrown by a deferred invocation, and fails the request.
+(defrecord ^:private InvocationLimiter [^Semaphore permits ^ConcurrentLinkedQueue deferred fail!])
+
+(defn ^:private release-invocation
+  [limiter]
+  (let [{:keys [^Semaphore permits deferred]} limiter]
+    (.release permits)
+    (drain-pending permits deferred
+                   (fn [start-deferred]
+                     (start-deferred)))))
+
+(defn ^:private track-invocation
+  "Given the result of invoking a field resolver (while holding a permit), returns
+  a ResolverResult and arranges for the permit to be released once the value is delivered."
+  [limiter resolver-result]
+  (if (instance? ResolverResultImpl resolver-result)
+    (do
+      (release-invocation limiter)
+      resolver-result)
+    (let [tracked (resolve-promise)]
+      (resolve/on-deliver! resolver-result
+                           (fn [resolved-value]
+                             (release-invocation limiter)
+                             (resolve/deliver! tracked resolved-value)))
+      tracked)))
+
+(defn ^:private invoke-with-limit
+  "Invokes the field resolver (via the invoke function) if the request is below its limit
+  of outstanding asynchronous invocations.  Otherwise, the invocation is queued locally
+  and will occur once earlier invocations deliver their values.
+
+  Returns a ResolverResult."
+  [limiter invoke]
+  (let [{:keys [^Semaphore permits ^ConcurrentLinkedQueue deferred]} limiter]
+    (if (.tryAcquire permits)
+      (track-invocation limiter
+                        (try
+                          (invoke)
+                          (catch Throwable t
+                            (release-invocation limiter)
+                            (throw t))))
+      (let [result (resolve-promise)
+            ;; Returns true if the deferred invocation completed synchronously.
+            start-deferred (bound-fn []
+                             (try
+                               (let [resolver-result (invoke)]
+                                 (if (instance? ResolverResultImpl resolver-result)
+                                   (do
+                                     (resolve/deliver! result (:resolved-value resolver-result))
+                                     true)
+                                   (do
+                                     (resolve/on-deliver! resolver-result
+                                                          (fn [resolved-value]
+                                                            (release-invocation limiter)
+                                                            (resolve/deliver! result resolved-value)))
+                                     false)))
+                               (catch Throwable t
+                                 ;; There's no caller to propagate the exception to; as on the immediate
+                                 ;; path, it fails the request.
+                                 ((:fail! limiter) t)
+                                 true)))]
+        (.offer deferred start-deferred)
+        (drain-pending permits deferred
+                       (fn [start-deferred]
+                         (start-deferred)))
+        result))))
+
+(defn ^:private invoke-field-resolver
+  [execution-context selection path container-type container-value]
+  (if-some [limiter (:limiter execution-context)]
+    (invoke-with-limit limiter #(invoke-resolver-for-field execution-context selection path container-type container-value))
+    (invoke-resolver-for-field execution-context selection path container-type container-value)))
+
+(deftype ^:private MemoKey [container-value field-name arguments ^int hash-code]
+
+  Object
+
+  (hashCode [_] hash-code)
+
+  (equals [_ other]
+    (and (instance? MemoKey other)
+         (let [^MemoKey other other]
+           ;; Container values are compared by identity, not equality.
+           (and (identical? container-value (.-container-value other))
+                (= field-name (.-field-name other))
+                (= arguments (.-arguments other)))))))
+
+(defn ^:private memo-key
+  [container-value field-name arguments]
+  (->MemoKey container-value field-name arguments
+             (-> (System/identityHashCode container-value)
+                 (hash-combine field-name)
+                 (hash-combine arguments))))
+
+(defn ^:private invoke-memoized
+  "Invokes the field resolver (via the invoke function) unless an identical invocation (same container value,
+  field, and arguments) has already occurred within the request; returns a ResolverResult shared by all
+  such invocations."
+  [^ConcurrentHashMap memo selection container-value invoke]
+  (let [k (memo-key container-value
+                    (get-nested selection [:field-definition :qualified-name])
+                    (selection/arguments selection))
+        shared (shared-result)
+        existing (.putIfAbsent memo k shared)]
+    (or existing
+        (let [resolver-result (try
+                                (invoke)
+                                (catch Throwable t
+                                  (.remove memo k shared)
+                                  (throw t)))]
+          (resolve/on-deliver! resolver-result #(deliver-shared! shared %))
+          shared))))
+
 (declare ^:private resolve-and-select)
 
 (defrecord ExecutionContext
   ;; context, resolved-value, and resolved-type change constantly during the process
-  ;; *errors is an Atom containing a vector, which accumulates
+  ;; *errors is an ErrorCollector (see select-utils), which accumulates
   ;; error-maps during execution.
-  ;; *warnings is an Atom containing a vector of warnings (error maps that
+  ;; *warnings is an ErrorCollector of warnings (error maps that
   ;; appear in the result as [:extensions :warnings].
-  ;; *resolver-tracing is usually nil, or may be an Atom containing an empty map, which
+  ;; *resolver-tracing is usually nil, or may be a ResolverTimings (see tracing), which
   ;; accumulates timing data during execution.
   ;; *extensions is an Atom containing a map; if non-empty, it is added to the result map as :extensions
   ;; schema is the compiled schema (obtained from the parsed query)
-  [context *errors *warnings *extensions *resolver-tracing timing-start schema])
+  ;; *cancelled is usually nil, or may be an Atom containing a boolean; once true, no further
+  ;; selections are applied and pending continuations are dropped.
+  ;; limiter is usually nil, or an InvocationLimiter that bounds outstanding asynchronous field resolver invocations.
+  ;; *incremental is usually nil, or (with incremental delivery) an Atom containing a vector of work
+  ;; deferred (by @defer or @stream) until after the current payload is delivered.
+  ;; instrumentation is usually nil, or the Instrumentation listener from the schema's compile options.
+  ;; memo is usually nil, or (when the schema has memoized fields) a ConcurrentHashMap of shared
+  ;; field resolutions.
+  [context *errors *warnings *extensions *resolver-tracing timing-start schema *cancelled limiter *incremental instrumentation memo])
+
+(defn ^:private execution-cancelled?
+  [execution-context]
+  (when-some [*cancelled (:*cancelled execution-context)]
+    @*cancelled))
 
 (defn ^:private apply-field-selection
   [execution-context field-selection path container-type container-value]
@@ -151,24 +391,62 @@
                         (:concrete-types inline-fragment-selection)
                         path container-type container-value))
 
-(defn ^:private apply-named-fragment
-  [execution-context named-fragment-selection path container-type container-value]
+(defn ^:private with-fragment-definition
+  [execution-context named-fragment-selection]
   (let [{:keys [fragment-name]} named-fragment-selection
         fragment-def (get-nested execution-context [:context constants/parsed-query-key :fragments fragment-name])]
+    ;; A bit of a hack:
+    (assoc named-fragment-selection :selections (:selections fragment-def)
+                                    :result-shape (:result-shape fragment-def)
+                                    :concrete-types (:concrete-types fragment-def))))
+
+(defn ^:private apply-named-fragment
+  [execution-context named-fragment-selection path container-type container-value]
+  (let [selection (with-fragment-definition execution-context named-fragment-selection)]
     (maybe-apply-fragment
       execution-context
-      ;; A bit of a hack:
-      (assoc named-fragment-selection :selections (:selections fragment-def))
-      (:concrete-types fragment-def)
+      selection
+      (:concrete-types selection)
       path container-type container-value)))
 
+(declare ^:private execute-nested-selections)
+
+(defn ^:private defer-fragment
+  "Handles the @defer directive on a fragment, when executing with incremental delivery:
+  the fragment's selections are executed after the current payload is delivered.
+
+  Returns true if the fragment has been deferred (or does not apply to the container type)."
+  [execution-context selection path container-type container-value]
+  (when (and (:defer selection)
+             (:*incremental execution-context)
+             (not= :field (selection/selection-kind selection)))
+    (let [selection' (cond-> selection
+                       (= :named-fragment (selection/selection-kind selection))
+                       (as-> $ (with-fragment-definition execution-context $)))]
+      (or (not (contains? (:concrete-types selection') container-type))
+          (su/add-incremental-work! execution-context
+                                    {:path path
+                                     :label (get-in selection [:defer :label])
+                                     :run (fn [execution-context]
+                                            (transform-result
+                                              (execute-nested-selections execution-context
+                                                                         (:selections selection')
+                                                                         (:result-shape selection')
+                                                                         path nil container-type container-value)
+                                              (fn [selected-data]
+                                                {:data (schema/collapse-nulls-in-map selected-data)})))})))))
+
 (defn ^:private apply-selection
   "Applies a selection to the current container-value.
 
-  Returns a ResolverResult that delivers a selected value (usually, a ResultTuple), or may return nil."
+  Returns a ResolverResult that delivers a selected value (usually, a ResultTuple), or may return nil.
+
+  Returns nil when the selection is disabled, or when execution has been cancelled."
   [execution-context selection path container-type container-value]
   (when-not
-    (:disabled? selection)
+    (or (:disabled? selection)
+        (execution-cancelled? execution-context)
+        (defer-fragment execution-context selection path container-type container-value))
     (case (selection/selection-kind selection)
       :field (apply-field-selection execution-context selection path container-type container-value)
 
@@ -194,17 +472,68 @@
         (assoc left-value alias value)))
     (deep-merge left-value right-value)))
 
+(defn ^:private null-value?
+  "Is the selected value (a ResultTuple, or a fragment's selected map) null, due to
+  a non-nullable field that was null?"
+  [value]
+  (identical? ::schema/null (if (su/is-result-tuple? value)
+                              (:value value)
+                              value)))
+
+(defn ^:private shaped-result
+  "Builds a ResultMap from selected values, when the selection set has a result shape
+  (it consists only of fields, so each value is a ResultTuple with a unique alias).
+
+  When no selections were disabled, the keys array from the shape is used as-is.
+
+  Returns ::schema/null if some value is null, or nil if some value is not a ResultTuple."
+  [^objects result-shape values]
+  (let [n (count values)
+        ^objects ks (if (= n (alength result-shape))
+                      result-shape
+                      (object-array n))
+        vs (object-array n)]
+    (loop [i 0]
+      (if (< i n)
+        (let [value (nth values i)]
+          (when (su/is-result-tuple? value)
+            (let [v (:value value)]
+              (if (identical? ::schema/null v)
+                v
+                (do
+                  (when-not (identical? ks result-shape)
+                    (aset ks i (:alias value)))
+                  (aset vs i v)
+                  (recur (inc i)))))))
+        (ResultMap. ks vs)))))
+
+(defn ^:private merged-result
+  "Merges selected values into an ordered map; returns ::schema/null if some value is null."
+  [values]
+  (reduce (fn [result value]
+            (if (null-value? value)
+              (reduced ::schema/null)
+              (merge-selected-values result value)))
+          empty-ordered-map
+          values))
+
 (defn ^:private execute-nested-selections
   "Executes nested sub-selections once a value is resolved.
 
-  Returns a ResolverResult delivering an ordered map of keys and selected values."
-  [execution-context sub-selections path resolve-xf container-type container-value]
+  Returns a ResolverResult delivering an ordered map of keys and selected values.
+
+  Null propagation occurs here: if any selected value is null because of a non-nullable
+  field, the result is ::schema/null, which the containing field's null collapser
+  converts to nil, or propagates further upward."
+  [execution-context sub-selections result-shape path resolve-xf container-type container-value]
   ;; First step is easy: convert the selections into ResolverResults.
   ;; Then once all the individual results are ready, combine them in the correct order.
   (let [selection-results (keepv #(apply-selection execution-context % path container-type container-value) sub-selections)]
     (aggregate-results selection-results
                        (fn [values]
-                         (cond-> (reduce merge-selected-values empty-ordered-map values)
+                         (cond-> (or (when result-shape
+                                       (shaped-result result-shape values))
+                                     (merged-result values))
                            resolve-xf resolve-xf)))))
 
 (defn ^:private combine-selection-results-sync
@@ -216,11 +545,13 @@
                          (fn [left-value]
                            ;; This is what makes it sync: we don't kick off the evaluation of the selection
                            ;; until the previous selection, left, has completed.
-                           (let [sub-resolved-result (apply-selection execution-context sub-selection path container-type container-value)]
+                           (if-some [sub-resolved-result (apply-selection execution-context sub-selection path container-type container-value)]
                              (resolve/on-deliver! sub-resolved-result
                                                   (fn [right-value]
                                                     (resolve/deliver! next-result
-                                                                      (merge-selected-values left-value right-value)))))))
+                                                                      (merge-selected-values left-value right-value))))
+                             ;; Selection was cancelled, so there's nothing to merge.
+                             (resolve/deliver! next-result left-value))))
     ;; This will deliver after the sub-selection delivers, which is only after the previous resolved result
     ;; delivers.
     next-result))
@@ -232,7 +563,7 @@
   removed.
 
   Returns ResolverResult whose value is a map of keys and selected values."
-  [execution-context sub-selections path _resolve-xf container-type container-value]
+  [execution-context sub-selections _result-shape path _resolve-xf container-type container-value]
   ;; This could be optimized for the very common case of a single sub-selection.
   (reduce #(combine-selection-results-sync execution-context %1 %2 path container-type container-value)
           (resolve-as empty-ordered-map)
@@ -266,7 +597,7 @@
                  (seq sub-selections))
             ;; Case #1: The field is an object type that needs further sub-selections to reach
             ;; scalar (or enum) leafs.
-            (execute-nested-selections execution-context sub-selections path resolve-xf resolved-type resolved-value)
+            (execute-nested-selections execution-context sub-selections (:result-shape selection) path resolve-xf resolved-type resolved-value)
             ;; Case #2: A scalar (or leaf) type, no further sub-selections necessary.
 
             resolve-xf
@@ -318,19 +649,23 @@
                                                           :location location} t)))))))
 
         ;; When tracing is enabled, defeat the optimization so that the (trivial) resolver can be
-        ;; invoked and its execution time tracked.
-        direct-fn (when-not (:*resolver-tracing execution-context)
+        ;; invoked and its execution time tracked; sampled tracing leaves default resolvers untimed.
+        direct-fn (when-not (some-> (:*resolver-tracing execution-context) tracing/times-default-resolvers?)
                     (get-nested selection [:field-definition :direct-fn]))
 
         ;; Given a ResolverResult from a field resolver, unwrap the field's RR and pass it through process-resolved-value.
         ;; process-resolved-value also returns an RR and chain that RR's delivered value to the RR returned from this function.
+        ;; If execution was cancelled while the field resolver was running, the continuation is dropped: no selector
+        ;; is applied and no nested resolvers are scheduled.
         unwrap-resolver-result (fn [field-resolver-result]
                                  (let [final-result (resolve-promise)]
                                    (resolve/on-deliver! field-resolver-result
                                                         (fn receive-resolved-value-from-field [resolved-value]
-                                                          (resolve/on-deliver! (process-resolved-value resolved-value)
-                                                                               (fn deliver-selection-for-field [resolved-value]
-                                                                                 (resolve/deliver! final-result resolved-value)))))
+                                                          (if (execution-cancelled? execution-context)
+                                                            (resolve/deliver! final-result nil)
+                                                            (resolve/on-deliver! (process-resolved-value resolved-value)
+                                                                                 (fn deliver-selection-for-field [resolved-value]
+                                                                                   (resolve/deliver! final-result resolved-value))))))
                                    final-result))]
 
     ;; For fragments, we start with a single value and it passes right through to
@@ -357,7 +692,13 @@
       ;; The result is a scalar value, a map, or a list of maps or scalar values.
 
       :else
-      (unwrap-resolver-result (invoke-resolver-for-field execution-context selection path container-type container-value)))))
+      (unwrap-resolver-result
+        (let [memo (:memo execution-context)]
+          (if (and (some? memo)
+                   (get-nested selection [:field-definition :memoize]))
+            (invoke-memoized memo selection container-value
+                             #(invoke-field-resolver execution-context selection path container-type container-value))
+            (invoke-field-resolver execution-context selection path container-type container-value)))))))
 
 (defn ^:private unwrap-root-value
   "For compatibility reasons, the value passed to a subscriber stream function may be a wrapped value."
@@ -377,56 +718,210 @@
   This should generally not be invoked by user code; see [[execute-parsed-query]]."
   [context]
   (let [parsed-query (get context constants/parsed-query-key)
-        {:keys [selections operation-type ::tracing/timing-start]} parsed-query
+        {:keys [selections result-shape operation-type ::tracing/timing-start]} parsed-query
         schema (get parsed-query constants/schema-key)
-        ^Executor executor (::schema/executor schema)]
+        {concurrency-limit :request-concurrency-limit
+         :keys [instrumentation]} (::schema/options schema)
+        ;; With a concurrency limit, this request's callbacks are throttled before
+        ;; reaching the shared executor.
+        ^Executor executor (cond-> (::schema/executor schema)
+                             concurrency-limit (bounded-executor concurrency-limit))]
     (binding [resolve/*callback-executor* executor]
       (let [enabled-selections (remove :disabled? selections)
-            *errors (atom [])
-            *warnings (atom [])
+            *errors (su/error-collector)
+            *warnings (su/error-collector)
             *extensions (atom {})
             *resolver-tracing (when (::tracing/enabled? context)
-                                (atom []))
+                                (tracing/resolver-timings (not (::tracing/sampled? context))))
+            *cancelled (get context constants/cancel-signal-key)
+            *incremental (get context ::incremental)
             context' (assoc context constants/schema-key schema)
             ;; Outside of subscriptions, the ::root-value is nil.
             ;; For subscriptions, the :root-value will be set to a non-nil value before
             ;; executing the query. It may be a wrapped value.
             root-type (get-nested parsed-query [:root :type-name])
             root-value (::resolved-value context)
+            result-promise (resolve-promise)
+            ;; The result is normally delivered once the selections complete, but an exception
+            ;; from a deferred field resolver invocation may fail the request first.
+            *delivered (AtomicBoolean. false)
+            deliver-result! (fn [result]
+                              (when (.compareAndSet *delivered false true)
+                                (resolve/deliver! result-promise result)))
             execution-context (map->ExecutionContext {:context context'
                                                       :schema schema
                                                       :*errors *errors
                                                       :*warnings *warnings
                                                       :*resolver-tracing *resolver-tracing
                                                       :timing-start timing-start
-                                                      :*extensions *extensions})
+                                                      :*extensions *extensions
+                                                      :*cancelled *cancelled
+                                                      :*incremental *incremental
+                                                      :instrumentation instrumentation
+                                                      ;; Each field of a mutation may have side effects, so
+                                                      ;; nothing is memoized within a mutation.
+                                                      :memo (when (and (::schema/memoize? schema)
+                                                                       (not= :mutation operation-type))
+                                                              (ConcurrentHashMap.))
+                                                      :limiter (when concurrency-limit
+                                                                 (->InvocationLimiter (Semaphore. (int concurrency-limit))
+                                                                                      (ConcurrentLinkedQueue.)
+                                                                                      deliver-result!))})
             [execution-context' root-value'] (unwrap-root-value execution-context (first selections) root-value)
-            result-promise (resolve-promise)
             f (bound-fn []
                 (try
                   (let [execute-fn (if (= :mutation operation-type) execute-nested-selections-sync execute-nested-selections)
-                        operation-result (execute-fn execution-context' enabled-selections [] nil root-type root-value')]
+                        operation-result (execute-fn execution-context' enabled-selections result-shape [] nil root-type root-value')]
                     (resolve/on-deliver! operation-result
                                          (fn [selected-data]
                                            (let [errors (seq @*errors)
                                                  warnings (seq @*warnings)
                                                  extensions @*extensions]
-                                             (resolve/deliver! result-promise
-                                                               (cond-> {:data (schema/collapse-nulls-in-map selected-data)}
-                                                                 (seq extensions) (assoc :extensions extensions)
-                                                                 *resolver-tracing
-                                                                 (tracing/inject-tracing timing-start
-                                                                                         (::tracing/parsing parsed-query)
-                                                                                         (::tracing/validation context)
-                                                                                         @*resolver-tracing)
-                                                                 errors (assoc :errors (distinct errors))
-                                                                 warnings (assoc-in [:extensions :warnings] (distinct warnings))))))))
+                                             (deliver-result!
+                                               (if (execution-cancelled? execution-context)
+                                                 ;; The selected data is incomplete, and the caller is likely
+                                                 ;; no longer waiting for it.
+                                                 {:errors [{:message "Query execution was cancelled."}]}
+                                                 (cond-> {:data (schema/collapse-nulls-in-map selected-data)}
+                                                   (seq extensions) (assoc :extensions extensions)
+                                                   *resolver-tracing
+                                                   (tracing/inject-tracing timing-start
+                                                                           (::tracing/parsing parsed-query)
+                                                                           (::tracing/validation context)
+                                                                           @*resolver-tracing)
+                                                   errors (assoc :errors (distinct errors))
+                                                   warnings (assoc-in [:extensions :warnings] (distinct warnings)))))))))
                   (catch Throwable t
-                    (resolve/deliver! result-promise t))))]
-        ;; Execute in the background
-        (.execute executor f)
-        ;; And return a promise
-        result-promise))))
+                    (deliver-result! t))))]
+        (if (some? instrumentation)
+          (let [state (instrumentation/begin instrumentation :execute {:parsed-query parsed-query
+                                                                       :context context})]
+            (try
+              (.execute executor f)
+              (catch Throwable t
+                (instrumentation/end instrumentation :execute state {:exception t})
+                (throw t)))
+            (transform-result result-promise
+                              (fn [result]
+                                (instrumentation/end instrumentation :execute state
+                                                     (if (instance? Throwable result)
+                                                       {:exception result}
+                                                       {:result result}))
+                                result)))
+          (do
+            ;; Execute in the background
+            (.execute executor f)
+            ;; And return a promise
+            result-promise))))))
+
+(defn enable-cancellation
+  "Modifies the application context to support cancellation of query execution, via [[cancel!]].
+
+  When the context is passed to [[execute-parsed-query-async]] (or similar), cancellation
+  stops execution from applying any further selections; field resolvers that have
+  already been invoked run to completion, but their resolved values are discarded
+  and nested fields are not resolved.
+
+  [[execute-parsed-query]] enables cancellation automatically when a timeout
+  is specified, and cancels execution when the timeout occurs."
+  {:added "1.3"}
+  [context]
+  (assoc context constants/cancel-signal-key (atom false)))
+
+(defn cancel!
+  "Cancels query execution for a context previously passed through [[enable-cancellation]].
+
+  Does nothing if cancellation was not enabled."
+  {:added "1.3"}
+  [context]
+  (when-some [*cancelled (get context constants/cancel-signal-key)]
+    (reset! *cancelled true))
+  nil)
+
+(defn cancelled?
+  "Returns true if the execution of the query has been cancelled, for example,
+  because a timeout has occurred.
+
+  A long-running field resolver may periodically check this and, if true, abandon its work;
+  any value it eventually resolves will be ignored."
+  {:added "1.3"}
+  [context]
+  (if-some [*cancelled (get context constants/cancel-signal-key)]
+    (boolean @*cancelled)
+    false))
+
+(defn ^:no-doc enable-incremental-delivery
+  "Modifies the application context so that @defer and @stream directives are honored
+  when the query is executed; see [[deliver-incremental]]."
+  [context]
+  (assoc context ::incremental (atom [])))
+
+(defn ^:private reachable-work
+  "Returns the deferred work whose anchor path is present in the value delivered at base-path;
+  work beneath a field that was nulled out (for example, by an error in a non-nullable field)
+  is discarded."
+  [work base-path value]
+  (let [n (count base-path)]
+    (filterv #(some? (get-in value (subvec (or (:anchor-path %) (:path %)) n)))
+             work)))
+
+(defn ^:no-doc deliver-incremental
+  "Delivers the initial result of a query executed with incremental delivery to the on-payload callback,
+  then executes deferred work, passing each subsequent payload to the callback.
+
+  Each subsequent payload is a map with keys :incremental (a vector of one map with keys :path, :label,
+  :errors, and either :data or :items) and :hasNext.  Payloads may arrive in any order, but
+  the final payload has :hasNext false.
+
+  Calls to on-payload are serialized."
+  [context result on-payload]
+  (let [*incremental (get context ::incremental)
+        lock (Object.)
+        *pending (atom 0)]
+    (letfn [(deliver-payload [work-count payload]
+              (locking lock
+                (let [pending (swap! *pending + work-count)]
+                  (on-payload (cond-> payload
+                                (contains? payload :incremental) (assoc :hasNext (pos? pending))
+                                (and (pos? pending)
+                                     (not (contains? payload :incremental))) (assoc :hasNext true))))))
+            (complete [work body errors *nested]
+              (let [{:keys [path label]} work
+                    value (if (contains? body :items)
+                            (-> body :items first)
+                            (:data body))
+                    nested-work (reachable-work @*nested path value)]
+                (deliver-payload (dec (count nested-work))
+                                 {:incremental [(cond-> (assoc body :path path)
+                                                  label (assoc :label label)
+                                                  (seq errors) (assoc :errors (vec (distinct errors))))]})
+                (run! start nested-work)))
+            (start [work]
+              (let [*errors (su/error-collector)
+                    *nested (atom [])
+                    execution-context (assoc (:execution-context work)
+                                             :*errors *errors
+                                             :*incremental *nested)
+                    ^Executor executor (get-in execution-context [:schema ::schema/executor])]
+                (.execute executor
+                          (bound-fn []
+                            (binding [resolve/*callback-executor* executor]
+                              (try
+                                (resolve/on-deliver! ((:run work) execution-context)
+                                                     (fn [body]
+                                                       (complete work body @*errors *nested)))
+                                (catch Throwable t
+                                  (complete work
+                                            {:data nil}
+                                            (conj @*errors {:message (to-message t)
+                                                            :path (:path work)})
+                                            (atom [])))))))))]
+      (let [work (if (and (map? result)
+                          (contains? result :data))
+                   (reachable-work @*incremental [] (:data result))
+                   [])]
+        (deliver-payload (count work) result)
+        (run! start work)))))
 
 (defn invoke-streamer
   "Given a parsed and prepared query (inside the context, as with [[execute-query]]),
@@ -460,10 +955,8 @@
   (get-nested node [:field-definition :qualified-name]))
 
 (defn ^:private walk-selections
-  [context node-xform]
-  (let [parsed-query (get context constants/parsed-query-key)
-        selection (get context constants/selection-key)
-        *result (volatile! (transient []))]
+  [parsed-query selection node-xform]
+  (let [*result (volatile! (transient []))]
     (loop [queue (conj PersistentQueue/EMPTY selection)]
       (if-let [node (peek queue)]
         (let [queue' (-> queue
@@ -484,6 +977,8 @@
         ;; When queue exhausted:
         (-> *result deref persistent!)))))
 
+(declare ^:private look-ahead)
+
 (defn selection
   "Returns the field selection, an object that implements the
   [[FieldSelection]], [[SelectionSet]], [[Arguments]], and [[Directives]] protocols."
@@ -499,7 +994,7 @@
   Fragments are flattened (as if always selected)."
   {:added "0.17.0"}
   [context]
-  (walk-selections context to-field-name))
+  (look-ahead context :field-names))
 
 (defn ^:private to-field-data
   [node]
@@ -522,14 +1017,14 @@
   : The alias for the field, if any"
   {:added "0.34.0"}
   [context]
-  (walk-selections context to-field-data))
+  (look-ahead context :field-data))
 
 (defn selects-field?
   "Invoked by a field resolver to determine if a particular field is selected anywhere within the selection
    tree (that is, at any depth)."
   {:added "0.17.0"}
   [context field-name]
-  (boolean (some #(= field-name %) (selections-seq context))))
+  (contains? (look-ahead context :field-name-set) field-name))
 
 (defn ^:private conjv
   [coll v]
@@ -569,6 +1064,100 @@
           {}
           selections))
 
+(defn ^:private concrete-types
+  [type-def]
+  (if (= :object (:category type-def))
+    #{(:type-name type-def)}
+    (set (:members type-def))))
+
+(defn ^:private build-projection
+  [parsed-query types selections]
+  (reduce (fn [m selection]
+            (if (:disabled? selection)
+              m
+              (case (selection/selection-kind selection)
+
+                :field
+                (if (and (:leaf? selection)
+                         (some? (to-field-name selection)))
+                  (let [field-name (:field-name selection)]
+                    (reduce #(update %1 %2 conj field-name) m types))
+                  m)
+
+                :inline-fragment
+                (merge-with into m (build-projection parsed-query
+                                                     (set/intersection types (:concrete-types selection))
+                                                     (:selections selection)))
+
+                :named-fragment
+                (let [{:keys [concrete-types selections]} (get-nested parsed-query [:fragments (:fragment-name selection)])]
+                  (merge-with into m (build-projection parsed-query
+                                                       (set/intersection types concrete-types)
+                                                       selections))))))
+          (zipmap types (repeat #{}))
+          selections))
+
+(defn ^:private look-ahead-views
+  [parsed-query selection]
+  (let [field-names (delay (walk-selections parsed-query selection to-field-name))]
+    {:field-names field-names
+     :field-name-set (delay (set @field-names))
+     :field-data (delay (walk-selections parsed-query selection to-field-data))
+     :tree (delay (build-selections-map parsed-query (:selections selection)))
+     ;; The root selections (see parsed-query->context) have the root type as their field definition.
+     :projection (delay (build-projection parsed-query
+                                          (concrete-types (or (:root-value-type selection)
+                                                              (:field-definition selection)))
+                                          (:selections selection)))}))
+
+(deftype ^:private LookAheadKey [selection]
+
+  Object
+
+  (equals [_ other]
+    (and (instance? LookAheadKey other)
+         (identical? selection (.-selection ^LookAheadKey other))))
+
+  (hashCode [_]
+    (System/identityHashCode selection)))
+
+(defrecord ^:private RootSelections [field-definition selections]
+
+  selection/SelectionSet
+
+  ;; Effectively, this is a selection set on the root field (Query, Mutation, or Subscription).
+  (selection-kind [_] :field)
+
+  (selections [_] selections))
+
+(defn ^:private look-ahead-key
+  [selection]
+  ;; A RootSelections is created for each call to parsed-query->context, so it is identified
+  ;; by the query's own root selections.
+  (LookAheadKey. (if (instance? RootSelections selection)
+                   (:selections selection)
+                   selection)))
+
+(defn ^:private look-ahead
+  "Returns the look-ahead views of the selection in the context; views are computed on first use.
+
+  The views depend only on the selection (and on fragments of the prepared query), so
+  they are cached in the prepared query's metadata, keyed on the identity of the selection; this means that
+  the views are computed once per request (or once, for an invariant query), even when the field
+  is resolved for many values. The cache holds at most one entry per field selection of the query."
+  [context view-key]
+  (let [parsed-query (get context constants/parsed-query-key)
+        selection (get context constants/selection-key)
+        ^ConcurrentHashMap cache (-> parsed-query meta (get constants/look-ahead-key))
+        views (if (and cache (some? (:selections selection)))
+                (let [k (look-ahead-key selection)]
+                  (or (.get cache k)
+                      (let [views (look-ahead-views parsed-query selection)]
+                        (or (.putIfAbsent cache k views)
+                            views))))
+                (look-ahead-views parsed-query selection))]
+    @(get views view-key)))
+
 (defn selections-tree
   "Constructs a tree of the selections below the current field.
 
@@ -587,18 +1176,18 @@
    Fragments are flattened into containing fields, as with `selections-seq`."
   {:added "0.17.0"}
   [context]
-  (let [parsed-query (get context constants/parsed-query-key)
-        selection (get context constants/selection-key)]
-    (build-selections-map parsed-query (:selections selection))))
+  (look-ahead context :tree))
 
-(defrecord ^:private RootSelections [field-definition selections]
-
-  selection/SelectionSet
-
-  ;; Effectively, this is a selection set on the root field (Query, Mutation, or Subscription).
-  (selection-kind [_] :field)
+(defn projection
+  "Returns the leaf fields (fields of scalar or enum type) directly selected by the current field,
+  for each concrete type the field may return; useful for building a column list or a pull pattern.
 
-  (selections [_] selections))
+  Returns a map from concrete type name to a set of (unqualified) field names; fields selected
+  by fragments apply only to the types matched by the fragment.
+  The __typename pseudo-field is not included."
+  {:added "1.3"}
+  [context]
+  (look-ahead context :projection))
 
 (defn parsed-query->context
   "Converts a parsed query, prior to execution, into a context compatible with preview API:
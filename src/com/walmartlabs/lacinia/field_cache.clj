@@ -0,0 +1,148 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.field-cache
+  "Caching of resolved field values across requests.
+
+  Fields are cached when they have the `@cached` directive; the directive must be declared in the schema:
+
+  ```
+  enum CacheScope { PUBLIC PRIVATE }
+
+  directive @cached(maxAge: Int!, scope: CacheScope = PUBLIC) on FIELD_DEFINITION
+  ```
+
+  maxAge is in seconds. A PUBLIC value is shared by all requests; a PRIVATE value is
+  additionally keyed by the :private-key function (and is not cached when that function returns nil).
+
+  The cache itself is enabled by the :field-cache option to [[com.walmartlabs.lacinia.schema/compile]]."
+  {:added "1.3"}
+  (:require
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
+    [com.walmartlabs.lacinia.internal-utils :refer [q to-message]]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.resolve-utils :refer [shared-result deliver-shared!]]
+    [com.walmartlabs.lacinia.select-utils :as su])
+  (:import
+    (java.util LinkedHashMap Map$Entry)
+    (java.util.concurrent ConcurrentHashMap)))
+
+(defprotocol FieldCacheStore
+  "Storage for cached field values. Implementations must be thread safe."
+
+  (fetch [this k not-found]
+    "Returns the value stored for the key, or not-found if there is no value, or the value has expired.")
+
+  (store! [this k value max-age-ms]
+    "Stores a value for the key; the value expires after max-age-ms milliseconds."))
+
+(defn in-memory-store
+  "Returns a [[FieldCacheStore]] that stores up to max-entries values in memory; when full, the
+  least recently used value is evicted."
+  [max-entries]
+  (let [entries (proxy [LinkedHashMap] [16 0.75 true]
+                  (removeEldestEntry [^Map$Entry _]
+                    (> (.size ^LinkedHashMap this) max-entries)))]
+    (reify FieldCacheStore
+
+      (fetch [_ k not-found]
+        (locking entries
+          (if-let [[value expires-at] (.get ^LinkedHashMap entries k)]
+            (if (< (System/currentTimeMillis) expires-at)
+              value
+              (do
+                (.remove ^LinkedHashMap entries k)
+                not-found))
+            not-found)))
+
+      (store! [_ k value max-age-ms]
+        (locking entries
+          (.put ^LinkedHashMap entries k [value (+ (System/currentTimeMillis) max-age-ms)]))
+        nil))))
+
+(defn ^:private cached-directive
+  [field-def]
+  (some #(when (= :cached (:directive-type %)) %) (:directives field-def)))
+
+(defn ^:private cacheable?
+  "Values that carry errors, context, or other behavior are not cached."
+  [value]
+  (not (or (su/is-wrapped-value? value)
+           (instance? Throwable value))))
+
+(defn ^:no-doc with-default-store
+  "Supplies the default store, shared by all cached fields, if the options do not provide one."
+  [field-cache-options]
+  (update field-cache-options :store #(or % (in-memory-store 10000))))
+
+(defn ^:no-doc wrap-resolver
+  "Invoked when compiling the schema; wraps the field resolver when the field has the @cached directive.
+
+  Otherwise, returns nil."
+  [field-cache-options instrumentation field-def resolver]
+  (when-let [directive (cached-directive field-def)]
+    (let [{:keys [maxAge scope]} (:directive-args directive)
+          {:keys [store parent-key private-key]
+           :or {parent-key identity}} field-cache-options
+          private? (= "PRIVATE" (some-> scope name))
+          max-age-ms (* 1000 maxAge)
+          field-name (:qualified-name field-def)
+          resolver-fn (resolve/as-resolver-fn resolver)
+          ;; Concurrent misses for the same key share a single invocation of the field resolver.
+          ^ConcurrentHashMap in-flight (ConcurrentHashMap.)
+          lookup (fn [k]
+                   (if (some? instrumentation)
+                     (let [state (instrumentation/begin instrumentation :cache {:field-name field-name
+                                                                                 :key k})
+                           value (fetch store k ::miss)]
+                       (instrumentation/end instrumentation :cache state {:hit (not= ::miss value)})
+                       value)
+                     (fetch store k ::miss)))]
+      (fn [context args value]
+        (let [private-id (when private?
+                           (private-key context))]
+          (if (and private? (nil? private-id))
+            (resolver-fn context args value)
+            (let [k [field-name args (parent-key value) private-id]
+                  cached (lookup k)]
+              (if-not (= ::miss cached)
+                cached
+                (let [shared (shared-result)
+                      existing (.putIfAbsent in-flight k shared)
+                      result (resolve/resolve-promise)]
+                  (when-not existing
+                    ;; An exception is delivered, like a value, so that this caller and any
+                    ;; callers waiting on the same key all get the same error.
+                    (let [resolver-result (try
+                                            (let [resolved (resolver-fn context args value)]
+                                              (if (resolve/is-resolver-result? resolved)
+                                                resolved
+                                                (resolve/resolve-as resolved)))
+                                            (catch Throwable t
+                                              (resolve/resolve-as t)))]
+                      (resolve/on-deliver! resolver-result
+                                           (fn [resolved-value]
+                                             (when (cacheable? resolved-value)
+                                               (store! store k resolved-value max-age-ms))
+                                             (.remove in-flight k shared)
+                                             (deliver-shared! shared resolved-value)))))
+                  (resolve/on-deliver! (or existing shared)
+                                       (fn [resolved-value]
+                                         (if (instance? Throwable resolved-value)
+                                           (resolve/deliver! result nil {:message (str "Exception in resolver for "
+                                                                                       (q field-name)
+                                                                                       ": "
+                                                                                       (to-message resolved-value))})
+                                           (resolve/deliver! result resolved-value))))
+                  result)))))))))
@@ -0,0 +1,119 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.instrumentation
+  "An extension point for observing the phases of a request: parsing, preparing, validating, executing,
+  and resolving individual fields.
+
+  An instrumentation listener is provided via the :instrumentation option
+  to [[com.walmartlabs.lacinia.schema/compile]]; when no listener is provided, there is no
+  additional overhead."
+  {:added "1.3"})
+
+(defprotocol Instrumentation
+  "Receives callbacks at the beginning and end of each phase of a request.
+
+  The phase is one of:
+
+  :parse
+  : Parsing the query document, in [[com.walmartlabs.lacinia.parser/parse-query]].
+    The data has keys :query (the query document) and :operation-name.
+
+  :prepare
+  : Applying query variables to the parsed query.
+    The data has keys :parsed-query and :variables.
+
+  :validate
+  : Validating the prepared query.
+    The data has key :parsed-query (the prepared query).
+
+  :execute
+  : Executing the prepared query, through to delivery of the result map.
+    The data has keys :parsed-query and :context (the application context).
+
+  :resolve
+  : Invoking a field resolver, through to delivery of its resolved value.
+    The data has keys :field-name (the qualified field name), :path, :arguments, and :context
+    (the context passed to the field resolver).
+    Fields that do not have an explicit field resolver are typically optimized, and not reported.
+
+  :cache
+  : Looking up a field value in the field cache (see [[com.walmartlabs.lacinia.field-cache]]).
+    The data has keys :field-name and :key (the cache key).
+
+  Callbacks may occur on any thread, and may overlap (for example, when field resolvers execute
+  asynchronously)."
+
+  (begin [this phase data]
+    "Invoked at the start of a phase.
+
+    Returns a value, which is passed back to [[end]] for the same phase; this is often
+    a start time or a tracing span.")
+
+  (end [this phase state outcome]
+    "Invoked at the end of a phase, with the state returned from [[begin]].
+
+    The outcome is a map; if the phase failed with an exception, it will contain key :exception.
+    Otherwise:
+
+    :parse
+    : key :parsed-query
+
+    :prepare
+    : key :parsed-query (the prepared query)
+
+    :validate
+    : key :errors, a seq of error maps (empty when the query is valid)
+
+    :execute
+    : key :result (the result map)
+
+    :resolve
+    : key :value (the resolved value) and, when the field resolver returned errors
+      (see [[com.walmartlabs.lacinia.resolve/with-error]]), key :errors, a seq of error maps.
+
+    :cache
+    : key :hit, true if the value was found in the cache
+
+    The return value is ignored."))
+
+(defn compose
+  "Combines any number of instrumentation listeners into a single listener.
+  Each listener receives its own state from [[begin]]; callbacks are invoked
+  in the order the listeners are provided."
+  [& listeners]
+  (let [listeners (vec listeners)]
+    (reify Instrumentation
+
+      (begin [_ phase data]
+        (mapv #(begin % phase data) listeners))
+
+      (end [_ phase state outcome]
+        (dorun
+          (map #(end %1 phase %2 outcome) listeners state))))))
+
+(defn ^:no-doc invoke-instrumented
+  "Invokes f as the given phase, reporting the outcome to the listener; the value returned
+  by f is stored in the outcome under outcome-key.
+
+  Returns the value from f, or rethrows any exception thrown by f."
+  [listener phase data f outcome-key]
+  (let [state (begin listener phase data)
+        result (try
+                 (f)
+                 (catch Throwable t
+                   (end listener phase state {:exception t})
+                   (throw t)))]
+    (end listener phase state {outcome-key result})
+    result))
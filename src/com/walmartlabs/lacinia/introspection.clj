@@ -23,7 +23,10 @@
    [com.walmartlabs.lacinia.constants :as constants]
    [clojure.string :as str]
    [clojure.data.json :as json]
-   [clojure.spec.alpha :as s]))
+   [clojure.spec.alpha :as s]
+   [com.walmartlabs.lacinia.selection :as selection])
+  (:import
+   (java.util.concurrent ConcurrentHashMap)))
 
 (def ^:private category->kind
   {:scalar :SCALAR
@@ -46,9 +49,15 @@
       ::category category
       ::type-def type-def})))
 
+(defn ^:private cached
+  "Returns the introspection data precomputed for the compiled schema, or nil."
+  [schema]
+  (some-> (get schema ::cache) deref))
+
 (defn ^:private type-name->schema-type
   [schema type-name]
-  (schema-type schema (get schema type-name)))
+  (or (get-in (cached schema) [:types type-name])
+      (schema-type schema (get schema type-name))))
 
 (defn ^:private resolve-interfaces
   [context _ object]
@@ -89,19 +98,26 @@
      :deprecationReason (when (string? deprecated) deprecated)
      ::type-map (:type field-def)}))
 
+(defn ^:private type-fields
+  "Returns all fields of an object or interface type, sorted by name."
+  [type-def]
+  (->> type-def
+       :fields
+       vals
+       (remove #(-> % :field-name is-internal-type-name?))
+       (sort-by :field-name)
+       (mapv resolve-field)))
+
 (defn ^:private resolve-fields
-  [_ args object-or-interface]
+  [context args object-or-interface]
   (let [{:keys [::category ::type-def]} object-or-interface
         {:keys [includeDeprecated]} args]
     (when (#{:object :interface} category)
-      (map #(resolve-field %)
-           (->> type-def
-                :fields
-                vals
-                (remove #(-> % :field-name is-internal-type-name?))
-                (filter #(or includeDeprecated
-                             (-> % :deprecated is-deprecated? not)))
-                (sort-by :field-name))))))
+      (let [fields (or (get-in (cached (get context constants/schema-key)) [:fields (:type-name type-def)])
+                       (type-fields type-def))]
+        (if includeDeprecated
+          fields
+          (remove :isDeprecated fields))))))
 
 (defn ^:private convert-location
   "Converts a directive location keyword to its GraphQL enum value format"
@@ -165,10 +181,9 @@
                                (map convert-directive))]
     (vec (concat (get-builtin-directives) custom-directives))))
 
-(defn ^:private resolve-root-schema
-  [context _ _]
-  (let [schema (get context constants/schema-key)
-        type-names (remove is-internal-type-name? (keys schema))
+(defn ^:private root-schema
+  [schema]
+  (let [type-names (remove is-internal-type-name? (keys schema))
         root (:com.walmartlabs.lacinia.schema/roots schema)
         queries-root (-> (get schema (:query root))
                          (update :fields #(remove-keys is-internal-type-name? %)))
@@ -191,6 +206,12 @@
       (not omit-subs)
       (assoc :subscriptionType (schema-type schema subs-root)))))
 
+(defn ^:private resolve-root-schema
+  [context _ _]
+  (let [schema (get context constants/schema-key)]
+    (or (:root-schema (cached schema))
+        (root-schema schema))))
+
 (defn ^:private resolve-root-type
   [context args _]
   (let [schema (get context constants/schema-key)
@@ -332,21 +353,86 @@
                       (::type-map input-value)
                       (::default-value input-value)))
 
+(def ^:private max-cached-results 32)
+
+(defn cache
+  "Returns a delay of the introspection data for a compiled schema: a map of type name to the value resolved
+  for the type (a __Type), the fields of each object and interface type, and the value for __schema.
+
+  The map also contains a cache of complete results of introspection queries (see [[cached-result]]).
+
+  The compiled schema is immutable, so this data is computed at most once, on first use; the compiled schema
+  stores the delay under the ::cache key."
+  [schema]
+  (delay
+    (let [;; Keys of the compiled schema are type names, except for namespaced keys used by Lacinia.
+          all-type-names (remove namespace (keys schema))
+          types (reduce (fn [m type-name]
+                          (assoc m type-name (schema-type schema (get schema type-name))))
+                        {}
+                        all-type-names)
+          schema' (assoc schema ::cache (delay {:types types}))]
+      {:types types
+       :fields (reduce (fn [m type-name]
+                         (let [type-def (get schema type-name)]
+                           (if (#{:object :interface} (:category type-def))
+                             (assoc m type-name (type-fields type-def))
+                             m)))
+                       {}
+                       all-type-names)
+       ;; Built with the cached types, so each __Type value is shared.
+       :root-schema (root-schema schema')
+       :results (ConcurrentHashMap.)})))
+
+(def ^:private introspection-fields #{:__schema :__type :__typename})
+
+(defn introspection-query?
+  "Returns true if the prepared query is a query operation that selects only introspection fields
+  (__schema, __type, and __typename); the result of such a query depends only on the compiled schema
+  and the query itself."
+  [prepared-query]
+  (and (= :query (:operation-type prepared-query))
+       (every? #(and (= :field (selection/selection-kind %))
+                     (contains? introspection-fields (:field-name %)))
+               (remove :disabled? (:selections prepared-query)))))
+
+(defn cached-result
+  "Returns the cached result for the introspection query (identified by a key, from
+  [[com.walmartlabs.lacinia.parser/query-key]]), or nil."
+  [schema k]
+  (when-let [^ConcurrentHashMap results (:results (cached schema))]
+    (.get results k)))
+
+(defn cache-result!
+  "Caches the result of an introspection query; only a limited number of distinct queries (typically,
+  the introspection queries issued by standard tooling) are cached."
+  [schema k result]
+  (when-let [^ConcurrentHashMap results (:results (cached schema))]
+    (when (< (.size results) max-cached-results)
+      (.putIfAbsent results k result)))
+  nil)
+
+(def ^:private *introspection-schema
+  (delay
+    (-> "com/walmartlabs/lacinia/introspection.edn"
+        io/resource
+        slurp
+        edn/read-string
+        (util/attach-resolvers {:root-type resolve-root-type
+                                :root-schema resolve-root-schema
+                                :fields resolve-fields
+                                :enum-values resolve-enum-values
+                                :input-fields resolve-input-fields
+                                :nested-type resolve-nested-type
+                                :interfaces resolve-interfaces
+                                :of-type resolve-of-type
+                                :possible-types resolve-possible-types
+                                :default-value default-value
+                                :is-repeatable resolve-is-repeatable}))))
+
 (defn introspection-schema
-  "Builds an returns the introspection schema, which can be merged into the user schema."
+  "Returns the introspection schema, which can be merged into the user schema.
+
+  The schema is read once, on first use."
   []
-  (-> "com/walmartlabs/lacinia/introspection.edn"
-      io/resource
-      slurp
-      edn/read-string
-      (util/attach-resolvers {:root-type resolve-root-type
-                              :root-schema resolve-root-schema
-                              :fields resolve-fields
-                              :enum-values resolve-enum-values
-                              :input-fields resolve-input-fields
-                              :nested-type resolve-nested-type
-                              :interfaces resolve-interfaces
-                              :of-type resolve-of-type
-                              :possible-types resolve-possible-types
-                              :default-value default-value
-                              :is-repeatable resolve-is-repeatable})))
+  @*introspection-schema)
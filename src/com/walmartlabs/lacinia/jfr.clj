@@ -0,0 +1,122 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.jfr
+  "Emits JDK Flight Recorder events for the phases of each request, and for each field resolver invocation."
+  {:added "1.3"}
+  (:require
+    [clojure.string :as str]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation])
+  (:import
+    (com.walmartlabs.lacinia.jfr ExecutionEvent ParseEvent PrepareEvent ResolveEvent ValidationEvent)
+    (jdk.jfr Event EventType)))
+
+(def ^:private parse-type (EventType/getEventType ParseEvent))
+(def ^:private prepare-type (EventType/getEventType PrepareEvent))
+(def ^:private validation-type (EventType/getEventType ValidationEvent))
+(def ^:private execution-type (EventType/getEventType ExecutionEvent))
+(def ^:private resolve-type (EventType/getEventType ResolveEvent))
+
+(defn ^:private operation-name
+  [parsed-query]
+  (some-> parsed-query :operation-name name))
+
+(defn ^:private path-string
+  [path]
+  (->> path
+       (map #(if (keyword? %) (name %) (str %)))
+       (str/join ".")))
+
+(defn ^:private begin-event
+  "Creates and begins an event when its type is enabled; otherwise returns nil."
+  [^EventType event-type constructor]
+  (when (.isEnabled event-type)
+    (let [^Event event (constructor)]
+      (.begin event)
+      event)))
+
+(defn ^:private commit-event
+  [^Event event]
+  (.end event)
+  (when (.shouldCommit event)
+    (.commit event)))
+
+(defn instrumentation
+  "Returns an [[com.walmartlabs.lacinia.instrumentation/Instrumentation]] listener that emits JDK Flight Recorder
+  events (in the Lacinia category) for parsing, preparing, validating, and executing queries, and for
+  invoking field resolvers.
+
+  Events are only created when enabled in the active recording settings; otherwise, the listener
+  does no work beyond a check of each event type.
+
+  The listener is provided via the :instrumentation option to [[com.walmartlabs.lacinia.schema/compile]],
+  possibly combined with other listeners via [[com.walmartlabs.lacinia.instrumentation/compose]]."
+  []
+  (reify instrumentation/Instrumentation
+
+    (begin [_ phase data]
+      (case phase
+        :parse
+        (when-let [^ParseEvent event (begin-event parse-type #(ParseEvent.))]
+          (set! (.-operationName event) (some-> data :operation-name name))
+          event)
+
+        :prepare
+        (when-let [^PrepareEvent event (begin-event prepare-type #(PrepareEvent.))]
+          (set! (.-operationName event) (-> data :parsed-query operation-name))
+          event)
+
+        :validate
+        (when-let [^ValidationEvent event (begin-event validation-type #(ValidationEvent.))]
+          (set! (.-operationName event) (-> data :parsed-query operation-name))
+          event)
+
+        :execute
+        (when-let [^ExecutionEvent event (begin-event execution-type #(ExecutionEvent.))]
+          (let [{:keys [parsed-query]} data]
+            (set! (.-operationName event) (operation-name parsed-query))
+            (set! (.-operationType event) (some-> parsed-query :operation-type name)))
+          event)
+
+        :resolve
+        (when-let [^ResolveEvent event (begin-event resolve-type #(ResolveEvent.))]
+          (let [{:keys [field-name path context]} data]
+            (set! (.-operationName event) (operation-name (get context constants/parsed-query-key)))
+            (set! (.-fieldName event) (subs (str field-name) 1))
+            (set! (.-path event) (path-string path)))
+          event)
+
+        nil))
+
+    (end [_ phase event outcome]
+      (when (some? event)
+        (case phase
+          ;; The operation name is optional when the document contains a single operation.
+          :parse
+          (when (nil? (.-operationName ^ParseEvent event))
+            (set! (.-operationName ^ParseEvent event) (-> outcome :parsed-query operation-name)))
+
+          :validate
+          (set! (.-errorCount ^ValidationEvent event) (int (count (:errors outcome))))
+
+          :execute
+          (set! (.-errorCount ^ExecutionEvent event) (int (count (get-in outcome [:result :errors]))))
+
+          :resolve
+          (set! (.-failed ^ResolveEvent event) (boolean (or (:exception outcome)
+                                                            (:errors outcome))))
+
+          nil)
+        (commit-event event)))))
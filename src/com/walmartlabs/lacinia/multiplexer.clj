@@ -0,0 +1,200 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.multiplexer
+  "Shares subscription streams between subscribers.
+
+  Subscribers whose subscriptions are identical (the same prepared query and, optionally, the same values
+  for selected keys of the application context) share a single invocation of the streamer, and each
+  value from the source stream is executed once, with the result delivered to every subscriber.
+
+  The per-event cost of a subscription is then proportional to the number of distinct subscriptions,
+  rather than the number of subscribers."
+  {:added "1.3"}
+  (:require
+    [com.walmartlabs.lacinia.backpressure :as backpressure]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.executor :as executor]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]))
+
+(defn ^:private subscription-key
+  [context context-keys]
+  [(parser/query-key (get context constants/parsed-query-key))
+   (select-keys context context-keys)])
+
+(defn multiplexer
+  "Creates a new multiplexer, used with [[subscribe]].
+
+  Options:
+
+  :context-keys
+  : Keys of the application context that affect the subscription's results, such as a user id.
+    Subscribers are only shared when their contexts have the same values for these keys.
+
+  :backpressure
+  : Options for [[com.walmartlabs.lacinia.backpressure/source-stream]]; when provided, each subscription
+    executes one value at a time, coalescing or dropping values that arrive during an execution.
+
+  The streamer, and the execution of each value from the source stream, are passed the application
+  context of the first subscriber; keys of the context outside of :context-keys should not affect
+  the result."
+  ([]
+   (multiplexer nil))
+  ([options]
+   {:context-keys (vec (:context-keys options))
+    :backpressure (:backpressure options)
+    :lock (Object.)
+    :*topics (atom {})}))
+
+(defn ^:private notify
+  [subscribers result]
+  (doseq [callback (vals subscribers)]
+    ;; A failing subscriber must not prevent delivery to the others.
+    (try
+      (callback result)
+      (catch Throwable _))))
+
+(defn ^:private cleanup!
+  "Invokes the streamer's cleanup function, once the topic is closed and the streamer has returned it."
+  [topic]
+  (let [{:keys [*cleanup *closed? *cleaned-up?]} topic]
+    (when (and @*closed?
+               (realized? *cleanup)
+               (compare-and-set! *cleaned-up? false true))
+      (when-let [cleanup @*cleanup]
+        (cleanup)))))
+
+(defn ^:private remove-topic!
+  "Removes the topic (if it is still current), so that no further subscribers may join it.
+
+  Must be invoked while holding the multiplexer's lock."
+  [multiplexer k topic]
+  (let [{:keys [*topics]} multiplexer]
+    (when (identical? topic (get @*topics k))
+      (swap! *topics dissoc k))))
+
+(defn ^:private finish-topic!
+  "Marks a removed topic as closed, then performs cleanup."
+  [topic]
+  (reset! (:*closed? topic) true)
+  (cleanup! topic))
+
+(defn ^:private close-topic!
+  [multiplexer k topic]
+  (locking (:lock multiplexer)
+    (remove-topic! multiplexer k topic))
+  (finish-topic! topic))
+
+(defn ^:private start-topic!
+  [multiplexer k topic context]
+  (let [{:keys [*subscribers *closed?]} topic
+        execute #(executor/execute-query (assoc context ::executor/resolved-value %))
+        on-result (fn [result]
+                    (if (nil? result)
+                      (do
+                        (close-topic! multiplexer k topic)
+                        (notify @*subscribers nil))
+                      (notify @*subscribers result)))
+        source-stream (if-let [options (:backpressure multiplexer)]
+                        (let [stream (backpressure/source-stream options execute on-result)]
+                          (reset! (:*stream topic) stream)
+                          (fn [value]
+                            (when-not @*closed?
+                              (stream value))))
+                        (fn accept-value [value]
+                          (cond
+                            @*closed?
+                            nil
+
+                            (nil? value)
+                            (on-result nil)
+
+                            ;; For compatibility reasons, the value may be a ResolverResult.
+                            (resolve/is-resolver-result? value)
+                            (resolve/on-deliver! value accept-value)
+
+                            :else
+                            (resolve/on-deliver! (execute value) on-result))))]
+    (deliver (:*cleanup topic) (executor/invoke-streamer context source-stream))
+    ;; The streamer may have closed the source stream before returning its cleanup function.
+    (cleanup! topic)))
+
+(defn subscribe
+  "Subscribes to the subscription in the context (the prepared query, stored in the context as with
+  [[com.walmartlabs.lacinia.executor/execute-query]]).
+
+  When an identical subscription is already active, the new subscriber shares it; otherwise,
+  the subscription's streamer is invoked.
+
+  The callback is invoked with each result map, and with nil when the source stream is closed by
+  the streamer.
+
+  Returns a function of no arguments that unsubscribes the callback; when the last subscriber
+  unsubscribes, the streamer's cleanup function is invoked."
+  [multiplexer context callback]
+  (let [{:keys [lock *topics context-keys]} multiplexer
+        k (subscription-key context context-keys)
+        id (Object.)
+        [topic new?] (locking lock
+                       (if-let [topic (get @*topics k)]
+                         (do
+                           (swap! (:*subscribers topic) assoc id callback)
+                           [topic false])
+                         (let [topic {:*subscribers (atom {id callback})
+                                      :*cleanup (promise)
+                                      :*closed? (atom false)
+                                      :*cleaned-up? (atom false)
+                                      :*stream (atom nil)}]
+                           (swap! *topics assoc k topic)
+                           [topic true])))]
+    ;; The streamer is invoked outside the lock, so that a slow streamer does not block
+    ;; subscribing to, or unsubscribing from, other subscriptions.
+    (when new?
+      (try
+        (start-topic! multiplexer k topic context)
+        (catch Throwable t
+          ;; Later subscribers will start a new topic; any that joined this one while the
+          ;; streamer was starting see the source stream close.
+          (close-topic! multiplexer k topic)
+          (notify (dissoc @(:*subscribers topic) id) nil)
+          (throw t))))
+    (fn unsubscribe []
+      (let [{:keys [*subscribers]} topic
+            ;; The topic is removed while still holding the lock, so that a new subscriber
+            ;; can not join it once it is about to close.
+            last? (locking lock
+                    (swap! *subscribers dissoc id)
+                    (when (empty? @*subscribers)
+                      (remove-topic! multiplexer k topic)
+                      true))]
+        (when last?
+          (finish-topic! topic))
+        nil))))
+
+(defn stats
+  "Returns a map describing the active subscriptions of the multiplexer: key :subscriptions is the
+  number of distinct subscriptions, and key :subscribers is the total number of subscribers.
+
+  When the :backpressure option is provided, the map also contains the sums of the
+  [[com.walmartlabs.lacinia.backpressure/metrics]] of the active subscriptions."
+  [multiplexer]
+  (let [topics (-> multiplexer :*topics deref vals)]
+    (cond-> {:subscriptions (count topics)
+             :subscribers (reduce + 0 (map #(-> % :*subscribers deref count) topics))}
+      (:backpressure multiplexer)
+      (merge (->> topics
+                  (keep #(-> % :*stream deref))
+                  (map backpressure/metrics)
+                  (apply merge-with + {:executed 0 :coalesced 0 :dropped 0 :pending 0}))))))
@@ -0,0 +1,203 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.off-heap-store
+  "A response store that keeps cached responses outside the Java heap, encoded as JSON.
+
+  Large cached responses, held as Clojure data structures, add to the work of the garbage collector.
+  This store instead encodes each response as UTF-8 JSON into direct byte buffers, or into a memory-mapped
+  file; only a small index (key, position, length, and tags) remains on the heap.
+
+  The buffers are used as a ring: responses are written one after another and, when the end of the
+  buffers is reached, writing continues from the start, evicting the oldest responses as their space
+  is reused."
+  {:added "1.3"}
+  (:require
+    [clojure.data.json :as data.json]
+    [clojure.java.io :as io]
+    [com.walmartlabs.lacinia.response-cache :as response-cache])
+  (:import
+    (java.io ByteArrayOutputStream OutputStreamWriter)
+    (java.nio ByteBuffer)
+    (java.nio.channels FileChannel FileChannel$MapMode)
+    (java.nio.charset StandardCharsets)
+    (java.nio.file OpenOption StandardOpenOption)
+    (java.util LinkedHashMap Map$Entry)))
+
+(def ^:private max-segment-size (* 1024 1024 1024))
+
+(defn ^:private encode
+  ^bytes [response]
+  (let [output (ByteArrayOutputStream.)]
+    (with-open [writer (OutputStreamWriter. output StandardCharsets/UTF_8)]
+      (data.json/write response writer :escape-unicode false))
+    (.toByteArray output)))
+
+(defn ^:private allocate-segments
+  [path segment-count segment-size]
+  (if path
+    (with-open [channel (FileChannel/open (.toPath (io/file path))
+                                          (into-array OpenOption [StandardOpenOption/CREATE
+                                                                  StandardOpenOption/READ
+                                                                  StandardOpenOption/WRITE]))]
+      ;; A mapping remains valid after its channel is closed.
+      (mapv #(.map channel FileChannel$MapMode/READ_WRITE (* % segment-size) segment-size)
+            (range segment-count)))
+    (vec (repeatedly segment-count #(ByteBuffer/allocateDirect segment-size)))))
+
+(defn ^:private slice
+  "Returns a view of a range of the segment, sharing its storage."
+  ^ByteBuffer [^ByteBuffer segment offset length]
+  (let [view (.duplicate segment)]
+    (.limit view (int (+ offset length)))
+    (.position view (int offset))
+    (.slice view)))
+
+(defn ^:private overlaps?
+  [[position length] start end]
+  (and (< position end)
+       (< start (+ position length))))
+
+(defn off-heap-store
+  "Returns a [[com.walmartlabs.lacinia.response-cache/ResponseStore]] that stores responses,
+  encoded as JSON, outside the Java heap.
+
+  Options:
+
+  :capacity
+  : The total size of the buffers, in bytes, defaults to 256 MiB.
+    The capacity is rounded up to a whole number of segments.
+
+  :segment-size
+  : The size of each buffer, in bytes; defaults to the capacity, up to a maximum (and the largest
+    allowed value) of 1 GiB. A response larger than a segment is not cached.
+
+  :path
+  : If provided, the buffers are memory-mapped from this file (created or extended as needed),
+    rather than allocated as direct buffers.
+    The file is scratch space: existing content is not reused.
+
+  The store also implements [[com.walmartlabs.lacinia.response-cache/JsonResponseStore]];
+  use [[com.walmartlabs.lacinia.response-cache/cached-json]] to obtain a cached response as bytes, ready to be
+  written to the client.
+  Such a buffer shares storage with the store: its content remains intact until its space is reused,
+  which happens only after the store has written its full capacity in further responses.
+  Write it promptly, or copy it.
+
+  Responses can not be decoded to their original form (JSON objects do not preserve key order, and enum
+  values are strings), so [[com.walmartlabs.lacinia.response-cache/lookup]] always returns nil:
+  [[com.walmartlabs.lacinia.response-cache/execute-parsed-query-async]] executes the query and stores
+  the response, and [[com.walmartlabs.lacinia.response-cache/cached-json]] serves it."
+  ([]
+   (off-heap-store nil))
+  ([options]
+   (let [{:keys [capacity segment-size path]
+          :or {capacity (* 256 1024 1024)}} options
+         segment-size (long (or segment-size (min capacity max-segment-size)))
+         _ (when-not (< 0 segment-size (inc max-segment-size))
+             (throw (ex-info "Segment size must be positive, and at most 1 GiB."
+                             {:segment-size segment-size})))
+         segment-count (long (Math/ceil (/ (double capacity) segment-size)))
+         capacity (* segment-count segment-size)
+         segments (allocate-segments path segment-count segment-size)
+         ;; key -> [position length tags], in the order written (which is also the order in the ring)
+         index (LinkedHashMap.)
+         *write-position (volatile! 0)
+         *bytes (volatile! 0)
+         ;; tag -> set of keys
+         *tag-index (volatile! {})
+         remove-entry! (fn [k [_ length tags]]
+                         (.remove index k)
+                         (vswap! *bytes - length)
+                         (vswap! *tag-index
+                                 (fn [tag-index]
+                                   (reduce (fn [tag-index tag]
+                                             (let [ks (disj (get tag-index tag) k)]
+                                               (if (seq ks)
+                                                 (assoc tag-index tag ks)
+                                                 (dissoc tag-index tag))))
+                                           tag-index
+                                           tags))))
+         evict-while! (fn [reclaimed?]
+                        ;; The oldest entries are the ones nearest ahead of the write position.
+                        (loop []
+                          (when-not (.isEmpty index)
+                            (let [^Map$Entry eldest (-> index .entrySet .iterator .next)]
+                              (when (reclaimed? (.getValue eldest))
+                                (remove-entry! (.getKey eldest) (.getValue eldest))
+                                (recur))))))
+         segment-slice (fn [position length]
+                         (slice (get segments (quot position segment-size))
+                                (rem position segment-size)
+                                length))]
+     (reify
+
+       response-cache/ResponseStore
+
+       (lookup [_ _]
+         ;; Decoding the JSON would not reproduce the response (its key order and enum values
+         ;; would be lost); responses are only available as JSON, via lookup-json.
+         nil)
+
+       (save! [_ k response tags]
+         (let [bytes (encode response)
+               length (alength bytes)
+               tags (set tags)]
+           (when (<= length segment-size)
+             (locking index
+               (when-let [existing (.get index k)]
+                 (remove-entry! k existing))
+               (let [position @*write-position
+                     ;; A response may not span segments; skip to the start of the next segment.
+                     start (if (<= (+ (rem position segment-size) length) segment-size)
+                             position
+                             (let [next-segment (* (inc (quot position segment-size)) segment-size)]
+                               (if (< next-segment capacity)
+                                 next-segment
+                                 0)))
+                     end (+ start length)]
+                 (evict-while! (if (< start position)
+                                 ;; Wrapped around: the remainder of the ring, and the start.
+                                 #(or (overlaps? % position capacity)
+                                      (overlaps? % 0 end))
+                                 #(overlaps? % position end)))
+                 (.put ^ByteBuffer (segment-slice start length) bytes)
+                 (.put index k [start length tags])
+                 (vswap! *bytes + length)
+                 (vswap! *tag-index #(reduce (fn [tag-index tag]
+                                               (update tag-index tag (fnil conj #{}) k))
+                                             %
+                                             tags))
+                 (vreset! *write-position (if (< end capacity) end 0))))))
+         nil)
+
+       (invalidate! [_ tags]
+         (locking index
+           (doseq [k (into #{} (mapcat #(get @*tag-index %)) tags)]
+             (when-let [entry (.get index k)]
+               (remove-entry! k entry))))
+         nil)
+
+       (store-metrics [_]
+         (locking index
+           {:entries (.size index)
+            :bytes @*bytes
+            :capacity capacity}))
+
+       response-cache/JsonResponseStore
+
+       (lookup-json [_ k]
+         (locking index
+           (when-let [[position length] (.get index k)]
+             (.asReadOnlyBuffer ^ByteBuffer (segment-slice position length)))))))))
@@ -26,13 +26,15 @@
     [com.walmartlabs.lacinia.schema :as schema]
     [com.walmartlabs.lacinia.constants :as constants]
     [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
     [com.walmartlabs.lacinia.parser.query :as qp]
     [com.walmartlabs.lacinia.tracing :as tracing]
     [com.walmartlabs.lacinia.selection :as selection]
     [com.walmartlabs.lacinia.describe :refer [Describe]]
     [flatland.ordered.map :refer [ordered-map]])
   (:import
-    (clojure.lang ExceptionInfo)))
+    (clojure.lang ExceptionInfo)
+    (java.util.concurrent ConcurrentHashMap)))
 
 (declare ^:private selection)
 
@@ -65,7 +67,12 @@
 (def ^:private builtin-directives
   (let [if-arg {:if {:type {:kind :non-null
                             :type {:kind :root
-                                   :type :Boolean}}}}]
+                                   :type :Boolean}}}}
+        ;; @defer and @stream are enabled unless the if argument is explicitly false.
+        incremental-args {:if {:type {:kind :root
+                                      :type :Boolean}}
+                          :label {:type {:kind :root
+                                         :type :String}}}]
     {:skip {:args if-arg
             :effector (fn [node arguments]
                         (cond-> node
@@ -73,7 +80,24 @@
      :include {:args if-arg
                :effector (fn [node arguments]
                            (cond-> node
-                             (-> arguments :if false?) (assoc :disabled? true)))}}))
+                             (-> arguments :if false?) (assoc :disabled? true)))}
+     ;; @defer and @stream only mark the node; the executor honors them only when
+     ;; executing with incremental delivery, otherwise they are ignored.
+     :defer {:args incremental-args
+             :effector (fn [node arguments]
+                         (cond-> node
+                           (-> arguments :if false? not) (assoc :defer {:label (:label arguments)})))}
+     :stream {:args (assoc incremental-args
+                           :initialCount {:type {:kind :root
+                                                 :type :Int}})
+              :effector (fn [node arguments]
+                          (let [initial-count (or (:initialCount arguments) 0)]
+                            (when (neg? initial-count)
+                              (throw-exception "Argument initialCount of directive @stream may not be negative."
+                                               {:initial-count initial-count}))
+                            (cond-> node
+                              (-> arguments :if false? not) (assoc :stream {:label (:label arguments)
+                                                                            :initial-count initial-count}))))}}))
 
 (declare ^:private build-map-from-parsed-arguments)
 
@@ -812,26 +836,29 @@
 (defrecord ^:private FieldSelection [field-definition leaf? concrete-type? reportable-arguments
                                      alias field-name qualified-name selections directives arguments
                                      location locations root-value-type resolve-xf
-                                     compiled-schema]
+                                     compiled-schema result-shape]
 
   Describe
 
   (description-for [_]
     (str "field " (q field-name)))
 
+  ;; The compiled schema is attached to the field definition, root value type, and sub-selections
+  ;; when the selection is parsed, so these return shared values, without allocating.
+
   selection/SelectionSet
 
   (selection-kind [_] :field)
 
-  (selections [_] (mapv #(assoc % :compiled-schema compiled-schema) selections))
+  (selections [_] (or selections []))
 
   selection/FieldSelection
 
   (alias-name [_] alias)
 
-  (root-value-type [_] (assoc root-value-type :compiled-schema compiled-schema))
+  (root-value-type [_] root-value-type)
 
-  (field [_] (assoc field-definition :compiled-schema compiled-schema))
+  (field [_] field-definition)
 
   selection/Arguments
 
@@ -843,7 +870,8 @@
     (not-empty (group-by :directive-name directives))))
 
 (defrecord ^:private InlineFragment [selections directives on-type-name
-                                     location locations concrete-types]
+                                     location locations concrete-types result-shape
+                                     compiled-schema]
 
   Describe
 
@@ -861,7 +889,8 @@
   (selections [_] selections))
 
 (defrecord ^:private NamedFragment [directives selections fragment-name
-                                    location locations concrete-types]
+                                    location locations concrete-types
+                                    compiled-schema]
 
   Describe
 
@@ -1044,7 +1073,18 @@
       (->> selections
            (reduce reducer (ordered-map))
            vals))))
-;
+
+(defn ^:private result-shape
+  "When a selection set consists only of fields, the keys of the selected map are known in advance: each field's
+  alias, in order (coalescing has ensured that the aliases are unique).
+
+  Returns an object array of those keys, or nil if the selection set includes any fragments.
+
+  The array is shared by every ResultMap built for this selection set, and must not be modified."
+  [selections]
+  (when (every? #(= :field (selection/selection-kind %)) selections)
+    (object-array (map :alias selections))))
+
 (defn ^:private normalize-selections
   "Starting with a selection (a field or fragment) recursively normalize any nested selections,
   and handle marking the node for any necessary prepare phase operations."
@@ -1061,6 +1101,7 @@
                                         all-nested-fragments))]
         (assoc m
                :selections selections'
+               :result-shape (result-shape selections')
                :nested-fragments nested-fragments'))
       m)))
 
@@ -1082,7 +1123,7 @@
     (throw-exception (format "Fragment cannot condition on non-composite type %s."
                              (-> condition-type :type-name q)))))
 
-(defrecord ^:private FragmentDefinition [concrete-types selections directives type]
+(defrecord ^:private FragmentDefinition [concrete-types selections directives type result-shape]
 
   selection/SelectionSet
 
@@ -1177,14 +1218,15 @@
                       (assoc result
                              :compiled-schema schema
                              :qualified-name qualified-field-name
-                             :root-value-type nested-type
+                             ;; Attached once here, for the FieldSelection protocol methods.
+                             :root-value-type (assoc nested-type :compiled-schema schema)
                              :directives (convert-parsed-directives schema directives)
                              :leaf? (leaf? nested-type)
                              :concrete-type? (or is-typename-metafield?
                                                  (-> type :category #{:object :input-object} some?))
                              :arguments literal-arguments
                              :arguments-extractor dynamic-arguments-extractor
-                             :field-definition field-definition
+                             :field-definition (assoc field-definition :compiled-schema schema)
                              ;; An ugly optimization: this gets computed once
                              ;; rather than at execution time every time the
                              ;; field is selected.
@@ -1208,7 +1250,8 @@
         (let [concrete-types (expand-fragment-type-to-concrete-types fragment-type)
               inline-fragment (-> selection
                                   (assoc :concrete-types concrete-types
-                                         :on-type-name type-name)
+                                         :on-type-name type-name
+                                         :compiled-schema schema)
                                   (cond-> directives (assoc :directives (convert-parsed-directives schema directives)))
                                   map->InlineFragment)]
           (normalize-selections schema
@@ -1222,6 +1265,7 @@
     (with-exception-context (node-context defaults)
       (-> defaults
           (merge {:fragment-name fragment-name
+                  :compiled-schema schema
                   :nested-fragments #{fragment-name}
                   :directives (seq (convert-parsed-directives schema directives))})
           map->NamedFragment
@@ -1332,10 +1376,14 @@
       (throw (IllegalStateException. "Subscriptions only allow exactly one selection for the operation.")))
 
     ;; Build the result describing the fragments and selections (for the selected operation).
-    (cond-> {:selections selections
-             :operation-type operation-type
-             :root root
-             constants/schema-key schema}
+    ;; The look-ahead cache is metadata, so that it does not affect equality or printing.
+    (cond-> (with-meta {:selections selections
+                        :result-shape (result-shape selections)
+                        :operation-type operation-type
+                        :root root
+                        constants/schema-key schema}
+              {constants/look-ahead-key (ConcurrentHashMap.)})
+      (:name operation) (assoc :operation-name (:name operation))
       (seq fragments) (assoc :fragments fragments))))
 
 (defn ^{:added "1.1"} invariant?
@@ -1355,7 +1403,58 @@
     parsed-query
     (let [prepare #(prepare-node % variables)]
       (-> (prepare-nested-selections parsed-query variables)
-          (update :fragments #(map-vals prepare %))))))
+          (update :fragments #(map-vals prepare %))
+          ;; Look-ahead views computed for the unprepared query do not apply to the prepared query.
+          (vary-meta assoc constants/look-ahead-key (ConcurrentHashMap.))))))
+
+(defn ^:private node-key
+  [node]
+  (let [children (->> (selection/selections node)
+                      (remove :disabled?)
+                      (mapv node-key))]
+    (case (selection/selection-kind node)
+      :field
+      [(:qualified-name node)
+       (:alias node)
+       (:arguments node)
+       (mapv (juxt :directive-name :arguments) (:directives node))
+       (:location node)
+       children]
+
+      :inline-fragment
+      [:inline (:on-type-name node) (:location node) children]
+
+      :named-fragment
+      [:named (:fragment-name node) (:location node)])))
+
+(defn query-key
+  "Returns a value identifying the selected operation of a parsed or prepared query: its fields, arguments,
+  directives, and fragments.
+
+  Unlike the parsed query itself (which contains functions and other values created during parsing),
+  the value has well-defined equality and hashing, so two parses of the same query document have equal keys.
+
+  Arguments provided by query variables are only present once the query has been prepared."
+  {:added "1.3"}
+  [parsed-query]
+  (let [{:keys [operation-type selections fragments]} parsed-query
+        ;; The key is stored with the query's look-ahead views; like them, it is computed once per
+        ;; parsed query (or once per request, for a query that must be prepared).
+        ^ConcurrentHashMap cache (-> parsed-query meta (get constants/look-ahead-key))
+        compute #(vector operation-type
+                         (mapv node-key selections)
+                         (reduce-kv (fn [m fragment-name fragment]
+                                      (assoc m fragment-name (->> (:selections fragment)
+                                                                  (remove :disabled?)
+                                                                  (mapv node-key))))
+                                    {}
+                                    fragments))]
+    (if cache
+      (or (.get cache ::query-key)
+          (let [k (compute)]
+            (or (.putIfAbsent cache ::query-key k)
+                k)))
+      (compute))))
 
 (defn parse-query
   "Given a compiled schema and a query document, parses the query to an executable form
@@ -1379,7 +1478,14 @@
                            (tracing/create-timing-start))
          start-offset (tracing/offset-from-start timing-start')
          start-nanos (System/nanoTime)
-         parsed (xform-query schema (qp/parse-query query-document) operation-name)]
+         listener (get-nested schema [::schema/options :instrumentation])
+         parse #(xform-query schema (qp/parse-query query-document) operation-name)
+         parsed (if (some? listener)
+                  (instrumentation/invoke-instrumented listener :parse
+                                                       {:query query-document
+                                                        :operation-name operation-name}
+                                                       parse :parsed-query)
+                  (parse))]
      (assoc parsed
             ::tracing/timing-start timing-start'
             ::tracing/parsing {:start-offset start-offset
@@ -0,0 +1,125 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.parser.schema-snapshot
+  "Speeds up application startup by keeping the result of parsing a Schema Definition Language document
+  in a local file, keyed by a hash of the document.
+
+  When the document has not changed since the snapshot was written, the input schema is read from the
+  snapshot, rather than parsed again. Functions (field resolvers, streamers, scalar transformers, and so forth)
+  are not part of the snapshot; they are attached to the returned schema afterwards, using the functions in
+  [[com.walmartlabs.lacinia.util]], before the schema is compiled."
+  {:added "1.3"}
+  (:require
+    [clojure.edn :as edn]
+    [clojure.java.io :as io]
+    [com.walmartlabs.lacinia.parser.schema :as parser.schema])
+  (:import
+    (java.io ByteArrayOutputStream File PushbackReader)
+    (java.nio.charset StandardCharsets)
+    (java.nio.file AtomicMoveNotSupportedException CopyOption Files StandardCopyOption)
+    (java.security MessageDigest)))
+
+(def ^:private parser-resources
+  "The resources that determine the result of parsing: the parser namespaces and the generated ANTLR parser."
+  ["com/walmartlabs/lacinia/parser/schema.clj"
+   "com/walmartlabs/lacinia/parser/common.clj"
+   "com/walmartlabs/lacinia/GraphqlSchemaParser.class"
+   "com/walmartlabs/lacinia/GraphqlSchemaLexer.class"])
+
+(def ^:private *parser-digest
+  "A digest of the parser resources; snapshots written by a different version of the parser are not used."
+  (delay
+    (let [digest (MessageDigest/getInstance "SHA-256")]
+      (doseq [path parser-resources
+              :let [url (io/resource path)]
+              :when url]
+        (with-open [stream (io/input-stream url)]
+          (let [output (ByteArrayOutputStream.)]
+            (io/copy stream output)
+            (.update digest (.toByteArray output)))))
+      (.digest digest))))
+
+(defn ^:private schema-hash
+  [^String schema-string]
+  (let [digest (MessageDigest/getInstance "SHA-256")]
+    (.update digest ^bytes @*parser-digest)
+    (.update digest (.getBytes schema-string StandardCharsets/UTF_8))
+    (apply str (map #(format "%02x" %) (.digest digest)))))
+
+(defn ^:private read-snapshot
+  [^File file]
+  (when (.exists file)
+    (try
+      (with-open [reader (PushbackReader. (io/reader file))]
+        (edn/read reader))
+      ;; A damaged snapshot is treated as missing, and replaced.
+      (catch Exception _
+        nil))))
+
+(defn ^:private write-snapshot
+  "Writes the snapshot, if possible."
+  [^File file schema]
+  (try
+    (let [dir (.getParentFile file)
+          _ (.mkdirs dir)
+          temp-file (File/createTempFile "snapshot" ".tmp" dir)]
+      (try
+        (with-open [writer (io/writer temp-file)]
+          (binding [*out* writer
+                    *print-length* nil
+                    *print-level* nil
+                    *print-meta* false
+                    *print-namespace-maps* false]
+            (pr schema)))
+        ;; Readers in other processes see either the complete snapshot, or no snapshot.
+        (try
+          (Files/move (.toPath temp-file) (.toPath file)
+                      (into-array CopyOption [StandardCopyOption/ATOMIC_MOVE
+                                              StandardCopyOption/REPLACE_EXISTING]))
+          (catch AtomicMoveNotSupportedException _
+            (Files/move (.toPath temp-file) (.toPath file)
+                        (into-array CopyOption [StandardCopyOption/REPLACE_EXISTING]))))
+        nil
+        (finally
+          (.delete temp-file))))
+    ;; The snapshot is only a cache; failing to write it must not prevent startup.
+    (catch Exception _
+      nil)))
+
+(defn snapshot-file
+  "Returns the snapshot file (which may not exist) for the schema document, within the directory."
+  ^File [dir schema-string]
+  (io/file dir (str (schema-hash schema-string) ".edn")))
+
+(defn parse-schema
+  "Returns the input schema parsed from the Schema Definition Language document, as with
+  [[com.walmartlabs.lacinia.parser.schema/parse-schema]] (with no attach map).
+
+  The parsed schema is read from a snapshot file in the directory, if one exists for the document;
+  otherwise, the document is parsed and the snapshot file is written.
+
+  The directory is created if necessary. If the snapshot can not be written (for example, because
+  the directory is read-only), the parsed schema is still returned.
+  Snapshots for earlier versions of the document, or of Lacinia, are not removed.
+
+  The snapshot contains only data: metadata that the parser attaches to the schema (such as
+  source locations, and the markers of type extensions) is not preserved, so the schema returned
+  from a snapshot lacks it."
+  [dir schema-string]
+  (let [file (snapshot-file dir schema-string)]
+    (or (read-snapshot file)
+        (let [schema (parser.schema/parse-schema schema-string)]
+          (write-snapshot file schema)
+          schema))))
@@ -23,6 +23,7 @@
   * [[with-warning]]
   * [[with-context]]
   * [[with-extensions]]
+  * [[with-cache-tags]]
 
   The modifiers exist to resolve a value _and_ to perform a side effect, such as
   adding an error to the execution result.
@@ -335,6 +336,18 @@
   [value f & args]
   (wrap-value value :extensions [f args]))
 
+(defn with-cache-tags
+  "Wraps a value, tagging the response that contains it.
+
+  When the request is executed through a [[com.walmartlabs.lacinia.response-cache]], the tags are stored
+  with the cached response, and identify which responses to discard
+  when the application invalidates a tag.
+
+  Tags may be any values: typically strings or keywords, such as \"product:1234\"."
+  {:added "1.3"}
+  [value & tags]
+  (wrap-value value :cache-tags tags))
+
 (defn with-warning
   "As with [[with-error]], but the error map will be added to the :warnings
   key of the root :extensions map (not to the root :errors map).  Errors should
@@ -88,3 +88,34 @@
         (fn [value]
           (resolve/deliver! xformed (xf value))))
       xformed)))
+
+(defrecord ^:private SharedResult [*state]
+
+  ;; Unlike a ResolverResultPromise, a SharedResult may have any number of callbacks.
+
+  resolve/ResolverResult
+
+  (on-deliver! [this callback]
+    (loop []
+      (let [state @*state]
+        (cond
+          (contains? state :resolved-value)
+          (callback (:resolved-value state))
+
+          (compare-and-set! *state state (update state :callbacks conj callback))
+          nil
+
+          :else
+          (recur))))
+    this))
+
+(defn shared-result
+  "Returns a ResolverResult that may be shared: it accepts any number of callbacks, each invoked
+  once the value is provided via [[deliver-shared!]]. Callbacks are invoked on the delivering thread."
+  []
+  (->SharedResult (atom {:callbacks []})))
+
+(defn deliver-shared!
+  [shared-result resolved-value]
+  (let [[{:keys [callbacks]}] (swap-vals! (:*state shared-result) assoc :resolved-value resolved-value)]
+    (run! #(% resolved-value) callbacks)))
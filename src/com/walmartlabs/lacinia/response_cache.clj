@@ -0,0 +1,315 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.response-cache
+  "Caches entire query responses.
+
+  A response is identified by the query (see [[com.walmartlabs.lacinia.parser/query-key]]), the variables,
+  and a value derived from the application context; on a cache hit, the query is not executed at all.
+
+  Only responses without errors are cached. Field resolvers may tag the response
+  with [[com.walmartlabs.lacinia.resolve/with-cache-tags]]; the application invalidates
+  cached responses by tag, with [[invalidate-tags!]]."
+  {:added "1.3"}
+  (:require
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.tracing :as tracing])
+  (:import
+    (clojure.lang IKVReduce Named)
+    (java.util LinkedHashMap Map$Entry)
+    (java.util.concurrent.atomic AtomicLong)))
+
+(defprotocol ResponseStore
+  "Storage for cached responses. Implementations must be thread safe."
+
+  (lookup [this k]
+    "Returns the response stored for the key, or nil.")
+
+  (save! [this k response tags]
+    "Stores a response for the key, with a collection of tags.")
+
+  (invalidate! [this tags]
+    "Removes all responses that have any of the tags.")
+
+  (store-metrics [this]
+    "Returns a map describing the store; in-memory stores include keys :entries and :bytes."))
+
+(defprotocol JsonResponseStore
+  "Optionally implemented by a [[ResponseStore]] that keeps responses encoded as JSON."
+
+  (lookup-json [this k]
+    "Returns the response stored for the key as a read-only java.nio.ByteBuffer of UTF-8 encoded JSON, or nil."))
+
+(deftype ^:private CacheKey [k]
+
+  ;; Keys use Clojure equality, so that (for example) an Integer and a Long
+  ;; with the same value in the variables are equal.
+
+  Object
+
+  (equals [_ other]
+    (and (instance? CacheKey other)
+         (= k (.-k ^CacheKey other))))
+
+  (hashCode [_]
+    (hash k)))
+
+(defn ^:private name-size
+  ^long [x]
+  (.length (if (instance? Named x)
+             (name x)
+             (str x))))
+
+(defn estimate-size
+  "Returns an estimate of the size of the response when written as JSON, in characters; the default weight function
+  for [[in-memory-store]].
+
+  The response is walked once, without encoding it: strings, keywords, and map keys count their length,
+  integers count their digits, and other scalar values count a fixed amount."
+  ^long [response]
+  (cond
+    (string? response)
+    (+ 2 (.length ^String response))
+
+    (map? response)
+    (if (instance? IKVReduce response)
+      (reduce-kv (fn [^long size k v]
+                   (+ size 4 (name-size k) (estimate-size v)))
+                 2
+                 response)
+      (reduce (fn [^long size e]
+                (+ size 4 (name-size (key e)) (estimate-size (val e))))
+              2
+              response))
+
+    (sequential? response)
+    (reduce (fn [^long size v]
+              (+ size 1 (estimate-size v)))
+            2
+            response)
+
+    (instance? Named response)
+    (+ 2 (name-size response))
+
+    (nil? response)
+    4
+
+    (instance? Long response)
+    (loop [digits (if (neg? (long response)) 2 1)
+           n (quot (long response) 10)]
+      (if (zero? n)
+        digits
+        (recur (inc digits) (quot n 10))))
+
+    (boolean? response)
+    5
+
+    :else
+    8))
+
+(defn in-memory-store
+  "Returns a [[ResponseStore]] that keeps responses in memory.
+
+  When either limit is exceeded, the least recently used responses are evicted.
+
+  Options:
+
+  :max-entries
+  : The maximum number of responses, defaults to 1000.
+
+  :max-bytes
+  : The maximum total weight of the responses, defaults to 64 MiB.
+    If nil, only the number of entries is limited, and responses are not weighed.
+
+  :weigh
+  : A function that returns the approximate size of a response, defaults to [[estimate-size]]."
+  ([]
+   (in-memory-store nil))
+  ([options]
+   (let [{:keys [max-entries max-bytes weigh]
+          :or {max-entries 1000
+               max-bytes (* 64 1024 1024)
+               weigh estimate-size}} options
+         ;; Values are [response weight tags]
+         entries (LinkedHashMap. 16 0.75 true)
+         *bytes (volatile! 0)
+         ;; tag -> set of keys
+         *tag-index (volatile! {})
+         remove-entry! (fn [k [_ weight tags]]
+                         (.remove entries k)
+                         (vswap! *bytes - weight)
+                         (vswap! *tag-index
+                                 (fn [index]
+                                   (reduce (fn [index tag]
+                                             (let [ks (disj (get index tag) k)]
+                                               (if (seq ks)
+                                                 (assoc index tag ks)
+                                                 (dissoc index tag))))
+                                           index
+                                           tags))))]
+     (reify ResponseStore
+
+       (lookup [_ k]
+         (locking entries
+           (first (.get entries k))))
+
+       (save! [_ k response tags]
+         (let [weight (if max-bytes
+                        (weigh response)
+                        0)
+               tags (set tags)]
+           ;; A response larger than the store is not cached at all.
+           (when (or (nil? max-bytes)
+                     (<= weight max-bytes))
+             (locking entries
+               (when-let [existing (.get entries k)]
+                 (remove-entry! k existing))
+               (.put entries k [response weight tags])
+               (vswap! *bytes + weight)
+               (vswap! *tag-index #(reduce (fn [index tag]
+                                             (update index tag (fnil conj #{}) k))
+                                           %
+                                           tags))
+               (while (or (> (.size entries) max-entries)
+                          (and max-bytes
+                               (> @*bytes max-bytes)))
+                 (let [^Map$Entry eldest (-> entries .entrySet .iterator .next)]
+                   (remove-entry! (.getKey eldest) (.getValue eldest)))))))
+         nil)
+
+       (invalidate! [_ tags]
+         (locking entries
+           (doseq [k (into #{} (mapcat #(get @*tag-index %)) tags)]
+             (when-let [entry (.get entries k)]
+               (remove-entry! k entry))))
+         nil)
+
+       (store-metrics [_]
+         (locking entries
+           {:entries (.size entries)
+            :bytes @*bytes}))))))
+
+(defn response-cache
+  "Creates a response cache, used with [[execute-parsed-query-async]].
+
+  Options:
+
+  :store
+  : The [[ResponseStore]], defaults to an [[in-memory-store]] with default options.
+
+  :context-key
+  : A function passed the application context, that returns a value identifying the parts of the
+    context that affect the response, such as the user's locale.
+    The default returns nil: the context does not affect the response.
+    Returning ::skip (from this namespace) bypasses the cache for the request, for example, for
+    authenticated requests."
+  ([]
+   (response-cache nil))
+  ([options]
+   {:store (or (:store options) (in-memory-store))
+    :context-key (:context-key options (constantly nil))
+    :hits (AtomicLong.)
+    :misses (AtomicLong.)
+    ;; Incremented by each invalidation; a response is only saved if no invalidation
+    ;; occurred while it was executing.
+    :generation (AtomicLong.)}))
+
+(defn ^:private cacheable-result?
+  [result]
+  (and (map? result)
+       (contains? result :data)
+       (not (contains? result :errors))))
+
+(defn ^:private request-key
+  "Returns the key for the request, or nil if the request is not eligible for caching."
+  [response-cache parsed-query variables context]
+  (when (and (= :query (:operation-type parsed-query))
+             (not (::tracing/enabled? context)))
+    (let [context-value ((:context-key response-cache) context)]
+      (when-not (= ::skip context-value)
+        (CacheKey. [(parser/query-key parsed-query) (not-empty variables) context-value])))))
+
+(defn execute-parsed-query-async
+  "Executes the parsed query, as with [[com.walmartlabs.lacinia/execute-parsed-query-async]], but
+  returns the cached response when available.
+
+  Otherwise, the query is executed and, when the response has no errors, it is stored along
+  with any tags provided by field resolvers.
+
+  Only queries are cached; mutations and subscriptions, and requests with tracing enabled,
+  are always executed.
+
+  Returns a ResolverResult that delivers the result map, or an exception."
+  [response-cache parsed-query variables context]
+  (let [{:keys [store ^AtomicLong hits ^AtomicLong misses ^AtomicLong generation]} response-cache]
+    (if-let [k (request-key response-cache parsed-query variables context)]
+      (if-some [response (lookup store k)]
+        (do
+          (.incrementAndGet hits)
+          (resolve/resolve-as response))
+        (let [*tags (atom #{})
+              _ (.incrementAndGet misses)
+              start-generation (.get generation)
+              result (resolve/resolve-promise)]
+          (resolve/on-deliver! (lacinia/execute-parsed-query-async parsed-query
+                                                                   variables
+                                                                   (assoc context constants/cache-tags-key *tags))
+                               (fn [response]
+                                 ;; A response executed while tags were invalidated may be stale, so it is not saved.
+                                 (when (and (cacheable-result? response)
+                                            (= start-generation (.get generation)))
+                                   (let [tags @*tags]
+                                     (save! store k response tags)
+                                     ;; If an invalidation started while saving, it may have missed the response.
+                                     (when-not (= start-generation (.get generation))
+                                       (invalidate! store tags))))
+                                 (resolve/deliver! result response)))
+          result))
+      (lacinia/execute-parsed-query-async parsed-query variables context))))
+
+(defn cached-json
+  "Returns the cached response for the request, as a read-only java.nio.ByteBuffer of UTF-8 encoded JSON,
+  or nil if the response is not cached, or the request is not eligible for caching.
+
+  This requires a store that implements [[JsonResponseStore]], such as
+  [[com.walmartlabs.lacinia.off-heap-store/off-heap-store]]; the bytes may be written to the client
+  without decoding or copying them. When this returns nil, use [[execute-parsed-query-async]]."
+  [response-cache parsed-query variables context]
+  (let [{:keys [store ^AtomicLong hits]} response-cache]
+    (when (satisfies? JsonResponseStore store)
+      (when-let [k (request-key response-cache parsed-query variables context)]
+        (when-let [buffer (lookup-json store k)]
+          (.incrementAndGet hits)
+          buffer)))))
+
+(defn invalidate-tags!
+  "Removes all cached responses that were tagged with any of the tags.
+
+  Responses for queries that are executing when this is invoked are not cached."
+  [response-cache & tags]
+  (let [{:keys [store ^AtomicLong generation]} response-cache]
+    (.incrementAndGet generation)
+    (invalidate! store tags)))
+
+(defn metrics
+  "Returns a map of metrics for the cache: keys :hits and :misses, and the keys from
+  the store's [[store-metrics]]."
+  [response-cache]
+  (let [{:keys [store ^AtomicLong hits ^AtomicLong misses]} response-cache]
+    (merge {:hits (.get hits)
+            :misses (.get misses)}
+           (store-metrics store))))
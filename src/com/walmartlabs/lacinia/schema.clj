@@ -24,6 +24,8 @@
   (:require
     [clojure.spec.alpha :as s]
     [com.walmartlabs.lacinia.introspection :as introspection]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
+    [com.walmartlabs.lacinia.field-cache :as field-cache]
     [com.walmartlabs.lacinia.internal-utils
      :refer [map-vals map-kvs filter-vals deep-map-merge q get-nested
              is-internal-type-name? sequential-or-set? as-keyword
@@ -31,16 +33,17 @@
              to-message qualified-name fast-map-indexed]]
     [com.walmartlabs.lacinia.select-utils :as su]
     [com.walmartlabs.lacinia.resolve :as resolve
-     :refer [ResolverResult resolve-as is-resolver-result?]]
-    [com.walmartlabs.lacinia.resolve-utils :refer [aggregate-results]]
+     :refer [ResolverResult resolve-as resolve-promise is-resolver-result?]]
+    [com.walmartlabs.lacinia.resolve-utils :refer [aggregate-results transform-result]]
     [clojure.string :as str]
     [clojure.set :refer [difference]]
     [clojure.pprint :as pprint]
     [com.walmartlabs.lacinia.selection :as selection])
   (:import
-    (clojure.lang IObj PersistentQueue)
+    (clojure.lang IAtom IObj)
     (java.io Writer)
-    (java.util.concurrent Executor ThreadPoolExecutor TimeUnit LinkedBlockingQueue ThreadFactory)))
+    (java.util Collection)
+    (java.util.concurrent Callable Executor ForkJoinTask ThreadPoolExecutor TimeUnit LinkedBlockingQueue ThreadFactory)))
 
 ;; When using Clojure 1.8, the dependency on clojure-future-spec must be included,
 ;; and this code will trigger
@@ -106,16 +109,63 @@
   [v]
   (instance? CoercionFailure v))
 
+(defn ^:private shared-type?
+  "Returns true if the type was already compiled, as part of a fragment shared between compiled schemas
+  (see introspection-types); such types are not compiled again."
+  [schema type-name type-def]
+  (identical? type-def (get-in schema [::shared-types type-name])))
+
+(defn ^:private parallel-mapv
+  "Applies f to each value in parallel, using the common fork/join pool, and returns a vector of the results.
+
+  If f throws an exception for any of the values, the exception for the earliest such value is rethrown;
+  the error reported does not depend on the order in which the values were processed."
+  [f values]
+  (let [f' (bound-fn* f)
+        tasks (mapv (fn [value]
+                      (ForkJoinTask/adapt ^Callable (fn []
+                                                      (try
+                                                        [true (f' value)]
+                                                        (catch Throwable t
+                                                          [false t])))))
+                    values)]
+    (ForkJoinTask/invokeAll ^Collection tasks)
+    (mapv (fn [^ForkJoinTask task]
+            (let [[success? result] (.join task)]
+              (if success?
+                result
+                (throw result))))
+          tasks)))
+
+(defn ^:private update-types
+  "Updates the types of the schema for which pred (passed the type name and type) returns true, using f (passed
+  the type); the updates are independent of each other.
+
+  When there are more such types than the :parallel-compile-threshold option, they are updated in parallel."
+  [schema pred f]
+  (let [threshold (get-nested schema [::options :parallel-compile-threshold])
+        entries (when threshold
+                  (filterv (fn [[k v]] (pred k v)) schema))]
+    (if (and threshold
+             (> (count entries) threshold))
+      (into schema
+            (map vector (map key entries) (parallel-mapv #(f (val %)) entries)))
+      (reduce-kv (fn [s k v]
+                   (if (pred k v)
+                     (assoc s k (f v))
+                     s))
+                 schema
+                 schema))))
+
 (defn ^:private map-types
   "Maps the types of the schema that match the provided category, but leaves
-   the rest unchanged."
+   the rest (and any shared types) unchanged."
   [schema category f]
-  (reduce-kv (fn [s k v]
-               (if (-> v :category (= category))
-                 (assoc s k (f v))
-                 s))
-    schema
-    schema))
+  (update-types schema
+                (fn [k v]
+                  (and (-> v :category (= category))
+                       (not (shared-type? schema k v))))
+                f))
 
 (defn tag-with-type
   "Tags a value with a GraphQL type name, a keyword.
@@ -323,11 +373,13 @@
 (s/def ::resolve (s/or :function ::function-or-var
                    :protocol ::resolver-type))
 (s/def ::resolver-type #(satisfies? resolve/FieldResolver %))
+(s/def ::memoize boolean?)
 (s/def ::field (s/keys :opt-un [::description
                                 ::resolve
                                 ::args
                                 ::directives
-                                ::deprecated]
+                                ::deprecated
+                                ::memoize]
                  :req-un [::type]))
 (s/def ::operation (s/keys :opt-un [::description
                                     ::deprecated
@@ -473,6 +525,23 @@
 
 (s/def ::executor #(instance? Executor %))
 
+(s/def ::request-concurrency-limit pos-int?)
+
+(s/def ::parallel-list-threshold pos-int?)
+
+(s/def ::parallel-compile-threshold pos-int?)
+
+(s/def ::instrumentation #(satisfies? instrumentation/Instrumentation %))
+
+(s/def ::introspection-cache #(instance? IAtom %))
+
+(s/def ::store #(satisfies? field-cache/FieldCacheStore %))
+(s/def ::parent-key ifn?)
+(s/def ::private-key ifn?)
+(s/def ::field-cache (s/keys :opt-un [::store
+                                      ::parent-key
+                                      ::private-key]))
+
 (s/def ::compile-options (s/keys :opt-un [::default-field-resolver
                                           ::promote-nils-to-empty-list?
                                           ::enable-introspection?
@@ -480,7 +549,13 @@
                                           ::apply-subscription-field-directives
                                           ::disable-checks?
                                           ::disable-java-objects?
-                                          ::executor]))
+                                          ::executor
+                                          ::request-concurrency-limit
+                                          ::parallel-list-threshold
+                                          ::parallel-compile-threshold
+                                          ::instrumentation
+                                          ::introspection-cache
+                                          ::field-cache]))
 
 (defn ^:private wrap-map
   [compiled-schema m]
@@ -856,75 +931,105 @@
 
 (defn ^:private is-null?
   [v]
-  (= v ::null))
-
-(defn ^:private collapse-nulls-in-object
-  [forgive-null? null-producer? value]
-  (cond
-    (nil? value)
-    value
-
-    (is-null? value)
-    (if forgive-null?
-      nil
-      ::null)
-
-    (not null-producer?)
-    value
-
-    ;; If a map, and some potential field in the map may produce a null,
-    ;; then need to scan for any null values.  Slightly limited here
-    ;; in that this check may occur even when
-    (some is-null? (vals value))
-    (if forgive-null? nil ::null)
-
-    :else
-    value))
+  (identical? v ::null))
 
 (defn ^:no-doc collapse-nulls-in-map
-  [m]
-  (collapse-nulls-in-object true true m))
+  "Collapses a selected map to nil if it is ::null, or contains a ::null value.
 
-(defn can-reach-null-producer?
-  [schema element-def]
-  (loop [visited #{}
-         queue (conj PersistentQueue/EMPTY element-def)]
-    (cond-let
-      :let [element-def (peek queue)]
+  The executor propagates nulls as it assembles each selected map, so only the top-level
+  map (which, for a mutation, is merged rather than assembled) needs to be checked."
+  [m]
+  (when-not (or (is-null? m)
+                (and (map? m)
+                     (some is-null? (vals m))))
+    m))
 
-      (nil? element-def)
-      false
+(def ^:private null-producer-graph-category? #{:object :interface})
 
-      (or (contains? visited element-def)
-          (not (contains? #{:object :interface} (:category element-def))))
-      (recur visited (pop queue))
+(defn ^:private null-producer-reachability
+  "Returns the set of names of object and interface types from which a field that produces null
+  (a non-null field) can be reached, by way of fields of object and interface types.
 
-      ;; if it's a union, mark as visited and process its members
-      (-> element-def :category (= :union))
-      (recur (conj visited element-def)
-             (-> queue
-                 (pop)
-                 (into (for [member (:members element-def)]
-                         (get schema member)))))
+  Computed in a single pass over the schema: starting from the types that directly contain a
+  null-producing field, the set grows backwards along the field references."
+  [schema]
+  (let [type-defs (->> schema
+                       vals
+                       (filter #(null-producer-graph-category? (:category %))))
+        ;; type name -> names of types with a field of that type
+        referrers (reduce (fn [referrers type-def]
+                            (reduce (fn [referrers root-type-name]
+                                      (update referrers root-type-name conj (:type-name type-def)))
+                                    referrers
+                                    (->> type-def :fields vals (keep :root-type-name) distinct)))
+                          {}
+                          type-defs)]
+    (loop [reachable (into #{}
+                           (comp (filter #(some :produces-null? (-> % :fields vals)))
+                                 (map :type-name))
+                           type-defs)
+           queue (vec reachable)]
+      (if-let [type-name (peek queue)]
+        (let [new-names (remove reachable (get referrers type-name))]
+          (recur (into reachable new-names)
+                 (into (pop queue) new-names)))
+        reachable))))
+
+(defn ^:private attach-null-producer-reachability
+  [schema]
+  (assoc schema ::null-producer-reachability (delay (null-producer-reachability schema))))
 
-      :let [field-defs (-> element-def :fields vals)]
+(defn can-reach-null-producer?
+  "Returns true if the element definition (an object or interface), or any object or interface reachable
+  from it by way of its fields, has a field that produces null (a non-null field).
 
-      (some :produces-null? field-defs)
-      true
+  For a compiled schema, reachability for all types is computed once, on first use, and shared by
+  subsequent calls."
+  [schema element-def]
+  (boolean
+    (when (null-producer-graph-category? (:category element-def))
+      (let [field-defs (-> element-def :fields vals)]
+        (or (some :produces-null? field-defs)
+            (let [reachable (if-let [*reachable (get schema ::null-producer-reachability)]
+                              @*reachable
+                              (null-producer-reachability schema))]
+              (some reachable (keep :root-type-name field-defs))))))))
+
+(defn ^:private collapse-list-values
+  "Applies the collapser to each value in the list.
+
+  Returns ::null if any value collapses to ::null. Otherwise, returns the values
+  unchanged (without allocating a new vector) if no value was changed by the collapser."
+  [collapser values]
+  (let [values (if (vector? values)
+                 values
+                 (vec values))
+        n (count values)]
+    (loop [i 0
+           result nil]
+      (if (< i n)
+        (let [value (nth values i)
+              value' (collapser value)]
+          (cond
+            (is-null? value')
+            ::null
+
+            (identical? value value')
+            (recur (inc i) (when result
+                             (conj! result value')))
 
-      :else
-      (recur (conj visited element-def)
-             (into queue
-                   (comp (map :root-type-name)
-                         (distinct)
-                         (map #(get schema %))
-                         (filter #(contains? #{:object :interface} (:category %))))
-                   field-defs)))))
+            :else
+            (recur (inc i) (conj! (or result
+                                      (transient (into [] (subvec values 0 i))))
+                                  value'))))
+        (if result
+          (persistent! result)
+          values)))))
 
 (defn ^:private build-null-collapser
   "Builds a null-collapser for a field definition; the null collapser transforms a resolved value
-  for the field, potentially to the value ::null if it is nil but non-nullable OR if any sub-selection
-  collapses to ::null.
+  for the field, potentially to the value ::null if it is nil but non-nullable OR if it is already ::null
+  (the executor has already collapsed a selected map containing a ::null to ::null).
 
   A nullable field that contains a value of ::null collapses to nil.
 
@@ -934,13 +1039,11 @@
          nested-type :type} type]
     (case kind
       :root
-      (let [element-def (get schema nested-type)
-            {:keys [category]} element-def
-            map-type? (contains? #{:union :object :interface} category)
-            produces-null? (and map-type?
-                                (can-reach-null-producer? schema element-def))]
+      (if forgive-null?
         (fn [value]
-          (collapse-nulls-in-object forgive-null? produces-null? value)))
+          (when-not (is-null? value)
+            value))
+        identity)
 
       :non-null
       (let [nested-collapser (build-null-collapser schema false nested-type)]
@@ -959,9 +1062,9 @@
             (nil? values)
             empty-list
 
-            :let [values' (mapv nested-collapser values)]
+            :let [values' (collapse-list-values nested-collapser values)]
 
-            (some is-null? values')
+            (is-null? values')
             (if forgive-null? empty-list ::null)
 
             :else
@@ -1040,8 +1143,7 @@
 
 (defn ^:private existing-error-for-current-path?
   [execution-context path]
-  (let [{:keys [*errors]} execution-context]
-    (some #(= path (:path %)) @*errors)))
+  (su/error-at-path? (:*errors execution-context) path))
 
 (defn ^:private create-root-selector
   "Creates a selector function for the :root kind, which is the point at which
@@ -1217,6 +1319,129 @@
                        (selector execution-context selection callback path resolve-xf resolved-type resolved-value))))]
     selector))
 
+(defn ^:private defer-stream-items
+  "Handles the @stream directive on a list field, when executing with incremental delivery:
+  list elements after the initial count are selected later, each delivered in its own payload.
+
+  Returns the initial elements of the list, to be selected immediately."
+  [execution-context selection path element-type select-element resolved-value]
+  (let [{:keys [initial-count label]} (:stream selection)
+        non-null-element? (= :non-null (:kind element-type))
+        stream-element (fn [i element]
+                         (let [element-path (conj path i)]
+                           (su/add-incremental-work! execution-context
+                                                     {:path element-path
+                                                      :anchor-path path
+                                                      :label label
+                                                      :run (fn [execution-context]
+                                                             (transform-result
+                                                               (select-element execution-context element-path element)
+                                                               (fn [selected]
+                                                                 (let [selected' (collapse-nulls-in-map selected)]
+                                                                   ;; A null for a non-nullable element nulls the entire payload.
+                                                                   {:items (when-not (and non-null-element?
+                                                                                          (nil? selected'))
+                                                                             [selected'])}))))})))]
+    (loop [i initial-count
+           elements (seq (drop initial-count resolved-value))]
+      (when elements
+        (stream-element i (first elements))
+        (recur (inc i) (next elements))))
+    (take initial-count resolved-value)))
+
+(defn ^:private leaf-serializer
+  "For a list whose elements are scalars or enums, returns a function that serializes an element,
+  or returns ::not-serialized if the element requires the full selector pipeline (nulls in a non-null list,
+  wrapped or tagged values, values that fail to serialize, and so forth).
+
+  Returns nil for other element types."
+  [schema element-type]
+  (let [non-null? (= :non-null (:kind element-type))
+        root-type (if non-null? (:type element-type) element-type)
+        field-type (when (= :root (:kind root-type))
+                     (get schema (:type root-type)))
+        category (:category field-type)
+        serializer (:serialize field-type)
+        serialize (case category
+                    :scalar (fn [value]
+                              (let [serialized (try
+                                                 (serializer value)
+                                                 (catch Throwable _
+                                                   nil))]
+                                (if (or (nil? serialized)
+                                        (is-coercion-failure? serialized))
+                                  ::not-serialized
+                                  serialized)))
+                    :enum (let [possible-values (-> field-type :values set)]
+                            (fn [value]
+                              (let [serialized (serializer value)]
+                                (if (possible-values serialized)
+                                  serialized
+                                  ::not-serialized))))
+                    nil)]
+    (when serialize
+      (fn [value]
+        (cond
+          (nil? value)
+          (if non-null? ::not-serialized nil)
+
+          (or (su/is-wrapped-value? value)
+              (is-tagged-value? value)
+              (sequential-or-set? value))
+          ::not-serialized
+
+          :else
+          (serialize value))))))
+
+(defn ^:private select-leaf-list
+  [serialize-leaf select-elements execution-context elements resolve-xf]
+  (let [xf (or resolve-xf identity)]
+    (loop [i 0
+           serialized (transient [])
+           remaining (seq elements)]
+      (if-not remaining
+        (resolve-as (xf (persistent! serialized)))
+        (let [value (serialize-leaf (first remaining))]
+          (if (identical? ::not-serialized value)
+            ;; Select the remaining elements normally, so that errors are reported.
+            (let [prefix (persistent! serialized)]
+              (aggregate-results (select-elements execution-context i remaining)
+                                 (fn [selected]
+                                   (xf (into prefix selected)))))
+            (recur (inc i) (conj! serialized value) (next remaining))))))))
+
+(defn ^:private select-list-in-chunks
+  "Selects the elements of a large list in chunks, each (after the first) executed
+  via the callback executor, so that they may be selected in parallel."
+  [chunk-size select-elements execution-context selection path elements resolve-xf]
+  (let [elements (vec elements)
+        n (count elements)
+        ^Executor executor resolve/*callback-executor*
+        select-chunk (fn [start]
+                       (aggregate-results (select-elements execution-context start
+                                                           (subvec elements start (min n (+ start chunk-size))))))
+        chunk-results (mapv (fn [start]
+                              (if (or (zero? start)
+                                      (nil? executor))
+                                (select-chunk start)
+                                (let [result (resolve-promise)]
+                                  (.execute executor
+                                            (bound-fn []
+                                              (try
+                                                (resolve/on-deliver! (select-chunk start)
+                                                                     #(resolve/deliver! result %))
+                                                (catch Throwable t
+                                                  ;; There's no caller to propagate the exception to, so it becomes
+                                                  ;; an error on the field, and the chunk's elements are null.
+                                                  (su/apply-error execution-context selection path :*errors
+                                                                  {:message (to-message t)})
+                                                  (resolve/deliver! result (repeat (min chunk-size (- n start)) nil))))))
+                                  result)))
+                            (range 0 n chunk-size))]
+    (aggregate-results chunk-results
+                       (fn [chunks]
+                         ((or resolve-xf identity) (into [] cat chunks))))))
+
 (defn ^:private assemble-selector
   "Assembles a selector function for a field.
 
@@ -1237,7 +1462,9 @@
   (case (:kind type)
 
     :list
-    (let [next-selector (assemble-selector schema object-type field (:type type))]
+    (let [next-selector (assemble-selector schema object-type field (:type type))
+          serialize-leaf (leaf-serializer schema (:type type))
+          parallel-threshold (get-nested schema [::options :parallel-list-threshold])]
       (fn select-list [execution-context selection callback path resolve-xf resolved-type resolved-value]
         (cond
           (nil? resolved-value)
@@ -1267,11 +1494,29 @@
                                   (if (su/is-wrapped-value? next-v)
                                     (recur next-ec next-v)
                                     (next-selector next-ec selection callback path nil resolved-type next-v))))))
-                list-resolver-results (fast-map-indexed (fn [i v] (unwrapper execution-context (conj path i) v))
-                                        resolved-value)]
-            ;; A list inside a field will have a resolve-xf that applies to the final selected list;
-            ;; pass that aggregated list through the xf if it exists.
-            (aggregate-results list-resolver-results (or resolve-xf identity))))))
+                ;; @stream applies only to the field's outermost list; in a nested list, the path ends with an index.
+                elements (if (and (:stream selection)
+                                  (:*incremental execution-context)
+                                  (keyword? (peek path)))
+                           (defer-stream-items execution-context selection path (:type type) unwrapper resolved-value)
+                           resolved-value)
+                select-elements (fn [execution-context offset elements]
+                                  (fast-map-indexed (fn [i v] (unwrapper execution-context (conj path (+ offset i)) v))
+                                                    elements))]
+            (cond
+              ;; A list of scalars or enums is serialized in a single pass; paths are only needed
+              ;; when an element can't be serialized, in which case the remaining elements are selected normally.
+              serialize-leaf
+              (select-leaf-list serialize-leaf select-elements execution-context elements resolve-xf)
+
+              (and parallel-threshold
+                   (> (count elements) parallel-threshold))
+              (select-list-in-chunks parallel-threshold select-elements execution-context selection path elements resolve-xf)
+
+              :else
+              ;; A list inside a field will have a resolve-xf that applies to the final selected list;
+              ;; pass that aggregated list through the xf if it exists.
+              (aggregate-results (select-elements execution-context 0 elements) (or resolve-xf identity)))))))
 
     :non-null
     (let [next-selector (assemble-selector schema object-type field (:type type))]
@@ -1337,17 +1582,22 @@
 
 (defn ^:private prepare-field-resolver
   [schema options field-def]
-  (let [{:keys [default-field-resolver apply-field-directives]} options
+  (let [{:keys [default-field-resolver apply-field-directives field-cache instrumentation]} options
         {:keys [field-name compiled-directives]} field-def
         resolver (or (:resolve field-def)
                    (default-field-resolver field-name))
-        resolver' (if-not (and apply-field-directives
-                            (seq compiled-directives))
-                    resolver
-                    (or (apply-field-directives (assoc field-def :compiled-schema schema) (resolve/as-resolver-fn resolver))
-                      resolver))
-        direct-fn (-> resolver' meta ::direct-fn)]
-    (assoc field-def :resolve (wrap-resolver-to-ensure-resolver-result resolver')
+        ;; The field cache is inside the field directives, so that directive logic (such as
+        ;; authorization) applies to cached values as well.
+        resolver' (or (when field-cache
+                        (field-cache/wrap-resolver field-cache instrumentation field-def resolver))
+                      resolver)
+        resolver'' (if-not (and apply-field-directives
+                             (seq compiled-directives))
+                     resolver'
+                     (or (apply-field-directives (assoc field-def :compiled-schema schema) (resolve/as-resolver-fn resolver'))
+                       resolver'))
+        direct-fn (-> resolver'' meta ::direct-fn)]
+    (assoc field-def :resolve (wrap-resolver-to-ensure-resolver-result resolver'')
                      :direct-fn direct-fn)))
 
 (defn ^:private prepare-field-streamer
@@ -1460,6 +1710,13 @@
     (assoc element-def :deprecated (get-nested directive [:directive-args :reason] true))
     element-def))
 
+(defn ^:private apply-memoize-directive
+  "For a field definition, checks for a :memoize directive and, if present, sets the field's :memoize key."
+  [field-def]
+  (if (some #(-> % :directive-type (= :memoize)) (:directives field-def))
+    (assoc field-def :memoize true)
+    field-def))
+
 (defn ^:private normalize-enum-value-def
   "The :values key of an enum definition is either a seq of enum values, or a seq of enum value defs.
   The enum values are just the keyword/symbol/string.
@@ -1739,7 +1996,8 @@
               fields' (->> interface
                            :fields
                            (map-vals #(assoc % :type-name interface-name))
-                           (map-vals apply-deprecated-directive))]
+                           (map-vals apply-deprecated-directive)
+                           (map-vals apply-memoize-directive))]
           (-> interface
               (assoc :members implementors
                      :fields fields')
@@ -1800,7 +2058,8 @@
     (let [object-def' (apply-directive-arg-defaults schema object-def)]
       (update-fields-in-object object-def' (fn [field-def]
                                              (cond-> (prepare-field schema object-def field-def)
-                                               object-def? apply-deprecated-directive))))))
+                                               object-def? apply-deprecated-directive
+                                               object-def? apply-memoize-directive))))))
 
 (defn ^:private prepare-and-validate-objects
   "Comes very late in the compilation process to prepare objects, including validation that
@@ -1815,8 +2074,10 @@
 
 (defn ^:private prepare-field-resolvers
   [schema options]
-  (map-types schema :object
-             #(prepare-resolvers-in-object schema % options)))
+  (let [options' (cond-> options
+                   (:field-cache options) (update :field-cache field-cache/with-default-store))]
+    (map-types schema :object
+               #(prepare-resolvers-in-object schema % options'))))
 
 (defn ^:private prepare-streamers-in-object
   [schema object-def options]
@@ -1836,6 +2097,17 @@
           schema
           [:object :interface]))
 
+(defn ^:private mark-memoized-fields
+  "Identifies if any field is memoized; if not, query execution does not need to track
+  field resolutions."
+  [schema]
+  (let [memoize? (->> (concat (types-with-category schema :object)
+                              (types-with-category schema :interface))
+                      (mapcat #(-> % :fields vals))
+                      (some :memoize))]
+    (cond-> schema
+      memoize? (assoc ::memoize? true))))
+
 (def ^:private default-subscription-resolver
 
   ^ResolverResult
@@ -1954,8 +2226,14 @@
                   :allowed-locations locations})))))
   schema)
 
-(defn ^:private construct-compiled-schema
+(defn ^:private attach-introspection-cache
   [schema options]
+  (cond-> schema
+    (:enable-introspection? options)
+    (assoc ::introspection/cache (introspection/cache schema))))
+
+(defn ^:private construct-compiled-schema
+  [schema options shared-types]
   ;; Note: using merge, not two calls to xfer-types, since want to allow
   ;; for overrides of the built-in scalars without a name conflict exception.
   (let [merged-scalars (->> schema
@@ -1984,8 +2262,13 @@
       (add-root mutation :mutations (:mutations schema))
       (add-root subscription :subscriptions (:subscriptions schema))
       (apply-default-subscription-resolver subscription)
+      (cond-> shared-types (-> (merge shared-types)
+                               (assoc ::shared-types shared-types)))
       (as-> s
-        (map-vals #(compile-type % s) s))
+        (update-types s
+                      (fn [k v]
+                        (not (shared-type? s k v)))
+                      #(compile-type % s)))
       (compile-directive-defs (:directive-defs schema))
       (prepare-and-validate-interfaces)
       (prepare-and-validate-objects :object)
@@ -1997,8 +2280,49 @@
       ;; Last so that schema is as close to final and verified state as possible
       (prepare-field-resolvers options)
       (prepare-field-streamers options)
+      mark-memoized-fields
+      (dissoc ::shared-types)
+      attach-null-producer-reachability
+      (attach-introspection-cache options)
       map->CompiledSchema)))
 
+(def ^:private introspection-environment-keys
+  "The compile options that affect the compiled introspection types."
+  [:default-field-resolver :promote-nils-to-empty-list? :disable-checks? :disable-java-objects?
+   :parallel-list-threshold])
+
+(defn introspection-cache
+  "Returns a new, empty cache of compiled introspection types, for the :introspection-cache option to [[compile]].
+
+  The cache is owned by the application, which shares it between the schemas it compiles."
+  {:added "1.3"}
+  []
+  (atom {}))
+
+(defn ^:private introspection-types
+  "Returns the compiled introspection types (__Schema, __Type, and so forth).
+
+  These types do not depend on the rest of the schema, other than the String and Boolean scalars, so
+  when an introspection cache is provided, they are compiled once and shared by every compiled schema with
+  the same scalars and relevant compile options, rather than being compiled again for each schema."
+  [schema options]
+  (let [cache (:introspection-cache options)
+        k [(select-keys options introspection-environment-keys)
+           (select-keys (:scalars schema) [:String :Boolean])]]
+    (or (some-> cache deref (get k))
+        (let [types (->> (construct-compiled-schema (assoc (introspection/introspection-schema)
+                                                           :scalars (second k))
+                                                    options
+                                                    nil)
+                         (filter (fn [[type-name]]
+                                   (and (keyword? type-name)
+                                        (nil? (namespace type-name))
+                                        (str/starts-with? (name type-name) "__"))))
+                         (into {}))]
+          (when cache
+            (swap! cache assoc k types))
+          types))))
+
 (defn default-field-resolver
   "The default for the :default-field-resolver option, this uses the field name as the key into
   the resolved value."
@@ -2057,6 +2381,48 @@
     of [[*callback-executor*]] will be used or, if that's nil, a default
     ThreadPoolExecutor is supplied.
 
+  :request-concurrency-limit (added in 1.3)
+  : If provided, a positive integer that limits, for each request, the number of field resolvers
+    that may be outstanding (returned a [[ResolverResultPromise]] that has not yet been delivered),
+    and, separately, the number of [[ResolverResultPromise]] callbacks queued or running in the executor.
+    Work beyond the limit is queued within the request and released as earlier work completes,
+    so that a single expensive request can not monopolize the executor.
+    Field resolvers whose promises are only delivered once other field resolvers (in the same request) are invoked,
+    such as batching data loaders, may deadlock if the limit is too low.
+
+  :parallel-list-threshold (added in 1.3)
+  : If provided, a positive integer; when a list of objects has more elements than this, its elements are selected in chunks
+    of this size, executed in parallel via the :executor. Field resolvers for elements of such lists may be invoked
+    from multiple threads at once.
+
+  :parallel-compile-threshold (added in 1.3)
+  : If provided, a positive integer; when a stage of compilation applies to more types than this, the
+    types are processed in parallel, using the common fork/join pool. This reduces the time to compile
+    very large schemas. Callbacks, such as :apply-field-directives and the :default-field-resolver function,
+    may be invoked from multiple threads at once. When several types are invalid, the exception
+    reported is the same as when compiling sequentially.
+
+  :instrumentation (added in 1.3)
+  : An optional [[com.walmartlabs.lacinia.instrumentation/Instrumentation]] listener, notified at the beginning and end of
+    parsing, preparing, validating, and executing each query, and of each field resolver invocation.
+
+  :introspection-cache (added in 1.3)
+  : A cache, from [[introspection-cache]], of the compiled introspection types.
+    When several schemas are compiled with the same cache, the introspection types (__Schema, __Type, and so forth)
+    are compiled once and shared between them, reducing the time and memory needed for each schema.
+    Types are shared only between schemas with the same String and Boolean scalars, and the same
+    :default-field-resolver, :promote-nils-to-empty-list?, :disable-checks?, :disable-java-objects?,
+    and :parallel-list-threshold options (functions are compared by identity).
+
+  :field-cache (added in 1.3)
+  : Enables caching of field values across requests, for fields with the `@cached` directive
+    (see [[com.walmartlabs.lacinia.field-cache]]). The value is a map with optional keys:
+    :store, a [[com.walmartlabs.lacinia.field-cache/FieldCacheStore]] (defaulting to an in-memory store of 10000 values);
+    :parent-key, a function passed the containing field's resolved value, returning the part of the cache key
+    that identifies it (defaults to identity);
+    and :private-key, a function passed the context, returning the part of the cache key for PRIVATE fields
+    (for example, the user's id).
+
   :disable-checks?  (added in 1.1)
   : If true (defaults to false), certain runtime checks on data returned from field resolvers
     are omitted; this trades safety for speed, but may make sense when running in production.
@@ -2101,12 +2467,14 @@
               (str "Arguments to compile do not conform to spec:\n" (with-out-str (s/explain-out ed)))
               ed)))
    (let [options' (merge default-compile-opts options)
-         {:keys [enable-introspection?]} options'
-         introspection-schema (when enable-introspection?
-                                (introspection/introspection-schema))]
-     (-> schema
-         (deep-map-merge introspection-schema)
-         (construct-compiled-schema options')))))
+         {:keys [enable-introspection?]} options']
+     (if enable-introspection?
+       ;; Only the root fields (__schema and __type) are compiled with the schema; the introspection types
+       ;; are compiled separately, and may be shared.
+       (-> schema
+           (deep-map-merge (select-keys (introspection/introspection-schema) [:queries]))
+           (construct-compiled-schema options' (introspection-types schema options')))
+       (construct-compiled-schema schema options' nil)))))
 
 ;; The compiled schema tends to be huge and unreadable. It clutters exception output.
 ;; The following defmethods reduce its output to a stub.
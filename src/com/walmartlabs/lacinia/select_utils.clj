@@ -13,7 +13,11 @@
 ; limitations under the License.
 
 (ns ^:no-doc com.walmartlabs.lacinia.select-utils
-  (:require [com.walmartlabs.lacinia.internal-utils :refer [cond-let remove-vals]]))
+  (:require [com.walmartlabs.lacinia.internal-utils :refer [cond-let remove-vals]]
+            [com.walmartlabs.lacinia.constants :as constants])
+  (:import (clojure.lang IDeref)
+           (java.util Set)
+           (java.util.concurrent ConcurrentHashMap ConcurrentLinkedQueue)))
 
 (defrecord ResultTuple [alias value])
 
@@ -68,10 +72,43 @@
   (let [extra-data (ex-info-map selection path)]
     (structured-error-map error-map extra-data)))
 
+(deftype ErrorCollector [^ConcurrentLinkedQueue error-maps ^Set paths]
+
+  IDeref
+
+  (deref [_] (vec error-maps)))
+
+(defn error-collector
+  "Creates a collector of error maps, used in place of an Atom containing a vector.
+  Error maps are added without locking or retries (many threads may be adding errors concurrently),
+  and are kept in the order they were added; the paths of the error maps are indexed.
+
+  Dereferencing the collector returns a vector of the error maps."
+  []
+  (->ErrorCollector (ConcurrentLinkedQueue.) (ConcurrentHashMap/newKeySet)))
+
+(defn add-error!
+  "Adds an error map to a collector (or to an Atom containing a vector)."
+  [collector error-map]
+  (if (instance? ErrorCollector collector)
+    (let [^ErrorCollector collector collector]
+      (when-some [path (:path error-map)]
+        (.add ^Set (.-paths collector) path))
+      (.offer ^ConcurrentLinkedQueue (.-error-maps collector) error-map))
+    (swap! collector conj error-map))
+  nil)
+
+(defn error-at-path?
+  "Returns true if some error map in the collector (or Atom containing a vector) has the given path."
+  [collector path]
+  (if (instance? ErrorCollector collector)
+    (.contains ^Set (.-paths ^ErrorCollector collector) path)
+    (boolean (some #(= path (:path %)) @collector))))
+
 (defn apply-error
   [execution-context selection path atom-key error-map]
   (when-let [error-map' (enhance-error selection path error-map)]
-    (swap! (get execution-context atom-key) conj error-map'))
+    (add-error! (get execution-context atom-key) error-map'))
   execution-context)
 
 (defrecord WrappedValue [value behavior data])
@@ -100,4 +137,25 @@
                   execution-context)
 
     ;; data is an error map to be added to the warnings
-    :warning (apply-error execution-context selection path :*warnings data)))
+    :warning (apply-error execution-context selection path :*warnings data)
+
+    ;; data is a seq of tags; they are only collected when the request may be stored
+    ;; in a response cache.
+    :cache-tags (do
+                  (when-let [*tags (get-in execution-context [:context constants/cache-tags-key])]
+                    (swap! *tags into data))
+                  execution-context)))
+
+(defn add-incremental-work!
+  "When the query is executing with incremental delivery (for @defer and @stream), adds work
+  to be executed once the current payload has been delivered, and returns true.
+  Otherwise, returns nil; the caller should proceed normally.
+
+  work is a map with keys :path, :label, and :run; :run is a function passed the execution context
+  and returns a ResolverResult delivering the body of the subsequent payload (a map with key :data or :items).
+  The optional key :anchor-path is the path that must be non-null in the delivered data for
+  the work to be executed; it defaults to :path."
+  [execution-context work]
+  (when-let [*incremental (:*incremental execution-context)]
+    (swap! *incremental conj (assoc work :execution-context execution-context))
+    true))
@@ -0,0 +1,132 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.single-flight
+  "Coalesces identical, concurrent query executions: while a query is executing, further requests
+  for the same query, with the same variables, share the in-flight execution and its result,
+  rather than executing the query again."
+  {:added "1.3"}
+  (:require
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.resolve-utils :refer [shared-result deliver-shared!]]
+    [com.walmartlabs.lacinia.tracing :as tracing])
+  (:import
+    (java.util.concurrent ConcurrentHashMap)
+    (java.util.concurrent.atomic AtomicLong)))
+
+(deftype ^:private RequestKey [parsed-query variables context-key]
+
+  ;; The parsed query is compared by identity (it is typically obtained from a cache of parsed queries);
+  ;; variables and the context key are compared by value, using Clojure equality, so that (for example)
+  ;; an Integer and a Long with the same value are equal.
+
+  Object
+
+  (equals [_ other]
+    (and (instance? RequestKey other)
+         (identical? parsed-query (.-parsed-query ^RequestKey other))
+         (= variables (.-variables ^RequestKey other))
+         (= context-key (.-context-key ^RequestKey other))))
+
+  (hashCode [_]
+    (-> (System/identityHashCode parsed-query)
+        (* 31)
+        (+ (hash variables))
+        (* 31)
+        (+ (hash context-key)))))
+
+(defn coalescer
+  "Creates a coalescer, used with [[execute-parsed-query-async]].
+
+  Options:
+
+  :context-key
+  : A function passed the application context, that returns a value identifying the parts of the
+    context that affect the result, such as the user's identity or locale.
+    Requests are only coalesced when their context keys are equal.
+    The default returns nil: the context does not affect the result."
+  ([]
+   (coalescer nil))
+  ([options]
+   {:context-key (:context-key options (constantly nil))
+    :in-flight (ConcurrentHashMap.)
+    :requests (AtomicLong.)
+    :executions (AtomicLong.)}))
+
+(defn ^:private eligible?
+  [parsed-query context]
+  ;; A cancellation signal belongs to a single request; the shared execution
+  ;; must not be cancelled on behalf of just one of the requests sharing it.
+  ;; Likewise, tracing data describes a single request's execution.
+  (and (= :query (:operation-type parsed-query))
+       (not (contains? context constants/cancel-signal-key))
+       (not (::tracing/enabled? context))))
+
+(defn execute-parsed-query-async
+  "Executes the parsed query, as with [[com.walmartlabs.lacinia/execute-parsed-query-async]], but shares
+  the execution with any in-flight execution of the identical parsed query (the same instance),
+  with equal variables and an equal context key.
+
+  The shared execution is passed the context of the request that started it.
+
+  Only queries are coalesced; mutations and subscriptions, requests that support cancellation
+  (see [[com.walmartlabs.lacinia.executor/enable-cancellation]]), and requests with tracing enabled,
+  are always executed.
+
+  Returns a ResolverResult that delivers the result map, or an exception."
+  [coalescer parsed-query variables context]
+  (if-not (eligible? parsed-query context)
+    (lacinia/execute-parsed-query-async parsed-query variables context)
+    (let [{:keys [context-key ^ConcurrentHashMap in-flight ^AtomicLong requests ^AtomicLong executions]} coalescer
+          k (RequestKey. parsed-query (not-empty variables) (context-key context))
+          shared (shared-result)
+          existing (.putIfAbsent in-flight k shared)]
+      (.incrementAndGet requests)
+      (or existing
+          (do
+            (.incrementAndGet executions)
+            (let [result (try
+                           (lacinia/execute-parsed-query-async parsed-query variables context)
+                           (catch Throwable t
+                             (.remove in-flight k shared)
+                             (deliver-shared! shared t)
+                             (throw t)))]
+              (resolve/on-deliver! result
+                                   (fn [result-map]
+                                     ;; Later requests start a new execution.
+                                     (.remove in-flight k shared)
+                                     (deliver-shared! shared result-map)))
+              shared))))))
+
+(defn metrics
+  "Returns a map of metrics for the coalescer:
+
+  :requests
+  : The number of eligible requests.
+
+  :executions
+  : The number of executions; each remaining request shared an execution.
+
+  :coalescing-ratio
+  : The fraction of requests that shared an execution (from 0.0 to 1.0)."
+  [coalescer]
+  (let [requests (.get ^AtomicLong (:requests coalescer))
+        executions (.get ^AtomicLong (:executions coalescer))]
+    {:requests requests
+     :executions executions
+     :coalescing-ratio (if (pos? requests)
+                         (double (/ (- requests executions) requests))
+                         0.0)}))
@@ -17,8 +17,10 @@
   [Apollo tracing specification](https://github.com/apollographql/apollo-tracing)."
   {:added "0.38.0"}
   (:import
+    (clojure.lang IDeref)
     (java.time.format DateTimeFormatter)
-    (java.time ZonedDateTime ZoneOffset)))
+    (java.time ZonedDateTime ZoneOffset)
+    (java.util.concurrent ConcurrentLinkedQueue ThreadLocalRandom)))
 
 (defn timestamp
   "Returns the current time as a RFC-3339 string."
@@ -62,6 +64,29 @@
                :validation (xf-phase validation-phase)
                :execution {:resolvers resolver-timings}})))
 
+(deftype ^:no-doc ResolverTimings [default-resolvers? ^ConcurrentLinkedQueue timings]
+
+  IDeref
+
+  (deref [_] (vec timings)))
+
+(defn ^:no-doc resolver-timings
+  "Creates a collector for resolver timings; timings may be added from many threads concurrently,
+  without locking.
+
+  When default-resolvers? is false, default resolvers are not timed (and not invoked, when
+  they can be optimized away)."
+  [default-resolvers?]
+  (->ResolverTimings default-resolvers? (ConcurrentLinkedQueue.)))
+
+(defn ^:no-doc times-default-resolvers?
+  [^ResolverTimings timings]
+  (.-default-resolvers? timings))
+
+(defn ^:no-doc add-resolver-timing!
+  [^ResolverTimings timings timing]
+  (.offer ^ConcurrentLinkedQueue (.-timings timings) timing))
+
 (defn enable-tracing
   "Modifies the application context to enable tracing.
 
@@ -70,3 +95,18 @@
   request."
   [context]
   (assoc context ::enabled? true))
+
+(defn enable-sampled-tracing
+  "Modifies the application context to enable tracing for a random sample of requests;
+  sample-rate is the probability, from 0.0 to 1.0, that tracing is enabled for this request.
+
+  When tracing is enabled this way, default resolvers (fields without an explicit resolver)
+  are not timed and remain optimized; this keeps the overhead low enough to trace
+  a portion of production traffic. The result's tracing data is in the same format
+  as with [[enable-tracing]], but omits default resolvers."
+  {:added "1.3"}
+  [context sample-rate]
+  (if (< (.nextDouble (ThreadLocalRandom/current)) sample-rate)
+    (assoc context ::enabled? true
+                   ::sampled? true)
+    context))
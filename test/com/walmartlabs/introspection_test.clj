@@ -1513,3 +1513,38 @@
                                    :line 1}]
                       :message "Cannot query field `__type' on type `Query'."}]}
            (execute schema q)))))
+
+(deftest introspection-results-are-cached
+  (let [schema (schema/compile test-schema)
+        q "query ($name: String!) { __type(name: $name) { name fields { name } } }"
+        execute-raw #(lacinia/execute schema q {:name %} nil)
+        result (execute-raw "human")]
+    ;; Separately parsed, identical queries with equal variables share a result.
+    (is (identical? result (execute-raw "human")))
+    (is (not (identical? result (execute-raw "droid"))))
+    (is (= "droid" (-> (execute-raw "droid") :data :__type :name)))
+
+    (testing "queries that select other fields are always executed"
+      (let [q "{ __typename hero { name } }"]
+        (is (not (identical? (lacinia/execute schema q nil nil)
+                             (lacinia/execute schema q nil nil))))))))
+
+(deftest introspection-types-are-shared
+  (let [cache (schema/introspection-cache)
+        hello-schema {:queries {:hello {:type :String
+                                        :resolve (constantly "world")}}}
+        schema-1 (schema/compile test-schema {:introspection-cache cache})
+        schema-2 (schema/compile hello-schema {:introspection-cache cache})]
+    (is (identical? (:__Type schema-1) (:__Type schema-2)))
+    (is (= {:data {:__type {:name "__Type"
+                            :kind :OBJECT}}}
+           (execute schema-2 "{ __type(name: \"__Type\") { name kind } }")))
+
+    (testing "compile options that affect the introspection types are respected"
+      (is (not (identical? (:__Type schema-1)
+                           (:__Type (schema/compile test-schema {:introspection-cache cache
+                                                                 :disable-checks? true}))))))
+
+    (testing "types are only shared through a cache"
+      (is (not (identical? (:__Type compiled-schema)
+                           (:__Type (schema/compile hello-schema))))))))
@@ -0,0 +1,176 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.backpressure-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.backpressure :as backpressure]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]])
+  (:import
+    (java.util.concurrent Flow$Publisher Flow$Subscriber Flow$Subscription)))
+
+(defn ^:private manual-stream
+  "Returns a regulated source stream whose executions complete only when the test delivers them,
+  an atom of in-flight [value promise] pairs, and an atom of results."
+  [options]
+  (let [*executions (atom [])
+        *results (atom [])
+        stream (backpressure/source-stream options
+                                           (fn [value]
+                                             (let [result (resolve/resolve-promise)]
+                                               (swap! *executions conj [value result])
+                                               result))
+                                           #(swap! *results conj %))]
+    [stream *executions *results]))
+
+(defn ^:private complete-latest!
+  [*executions]
+  (let [[value result] (peek @*executions)]
+    (resolve/deliver! result {:data value})))
+
+(deftest latest-wins
+  (let [[stream *executions *results] (manual-stream nil)]
+    (run! stream [1 2 3 4])
+    (is (= [1] (map first @*executions)))
+    (is (= {:executed 1 :coalesced 2 :dropped 0 :pending 1}
+           (backpressure/metrics stream)))
+
+    (complete-latest! *executions)
+
+    (is (= [1 4] (map first @*executions)))
+
+    (stream nil)
+    ;; Completion waits for the in-flight execution.
+    (is (= [{:data 1}] @*results))
+
+    (complete-latest! *executions)
+
+    (is (= [{:data 1} {:data 4} nil] @*results))
+    (is (= {:executed 2 :coalesced 2 :dropped 0 :pending 0}
+           (backpressure/metrics stream)))))
+
+(deftest bounded-buffer-drops-oldest
+  (let [[stream *executions *results] (manual-stream {:strategy :buffer
+                                                      :buffer-size 2})]
+    (run! stream [1 2 3 4])
+    (is (= {:executed 1 :coalesced 0 :dropped 1 :pending 2}
+           (backpressure/metrics stream)))
+    (dotimes [_ 3]
+      (complete-latest! *executions))
+    (is (= [{:data 1} {:data 3} {:data 4}] @*results))))
+
+(deftest bounded-buffer-drops-newest
+  (let [[stream *executions *results] (manual-stream {:strategy :buffer
+                                                      :buffer-size 2
+                                                      :overflow :drop-newest})]
+    (run! stream [1 2 3 4])
+    (dotimes [_ 3]
+      (complete-latest! *executions))
+    (is (= [{:data 1} {:data 2} {:data 3}] @*results))
+    (is (= 1 (:dropped (backpressure/metrics stream))))))
+
+(defn ^:private test-schema
+  [*source-stream *cleanups]
+  (schema/compile
+    {:objects {:Event {:fields {:message {:type :String}}}}
+     :subscriptions {:events {:type :Event
+                              :stream (fn [_ _ source-stream]
+                                        (reset! *source-stream source-stream)
+                                        #(swap! *cleanups inc))}}}))
+
+(defn ^:private test-subscriber
+  [*subscription *events]
+  (reify Flow$Subscriber
+
+    (onSubscribe [_ subscription]
+      (reset! *subscription subscription))
+
+    (onNext [_ item]
+      (swap! *events conj (simplify item)))
+
+    (onError [_ t]
+      (swap! *events conj [:error (ex-message t)]))
+
+    (onComplete [_]
+      (swap! *events conj :complete))))
+
+(defn ^:private await-events
+  [*events n]
+  (loop [attempts 100]
+    (when (and (< (count @*events) n)
+               (pos? attempts))
+      (Thread/sleep 10)
+      (recur (dec attempts))))
+  @*events)
+
+(defn ^:private subscription-publisher
+  [options *source-stream *cleanups]
+  (let [compiled-schema (test-schema *source-stream *cleanups)
+        prepared-query (-> (parser/parse-query compiled-schema "subscription { events { message } }")
+                           (parser/prepare-with-query-variables nil))]
+    (backpressure/publisher {constants/parsed-query-key prepared-query} options)))
+
+(deftest publisher-executes-on-demand
+  (let [*source-stream (atom nil)
+        *cleanups (atom 0)
+        *subscription (atom nil)
+        *events (atom [])
+        ^Flow$Publisher publisher (subscription-publisher nil *source-stream *cleanups)]
+    (.subscribe publisher (test-subscriber *subscription *events))
+    (run! @*source-stream [{:message "first"} {:message "second"}])
+
+    ;; Nothing has been requested, so nothing executes.
+    (is (= {:executed 0 :coalesced 1 :dropped 0 :pending 1}
+           (backpressure/metrics publisher)))
+
+    (.request ^Flow$Subscription @*subscription 1)
+
+    (is (= [{:data {:events {:message "second"}}}] (await-events *events 1)))
+
+    (@*source-stream {:message "third"})
+    (@*source-stream nil)
+
+    (is (= 1 (count @*events)))
+    (is (zero? @*cleanups))
+
+    (.request ^Flow$Subscription @*subscription 10)
+
+    (is (= [{:data {:events {:message "second"}}}
+            {:data {:events {:message "third"}}}
+            :complete]
+           (await-events *events 3)))
+    (is (= 1 @*cleanups))))
+
+(deftest publisher-cancel
+  (let [*source-stream (atom nil)
+        *cleanups (atom 0)
+        *subscription (atom nil)
+        *events (atom [])
+        *second-events (atom [])
+        ^Flow$Publisher publisher (subscription-publisher {:strategy :buffer} *source-stream *cleanups)]
+    (.subscribe publisher (test-subscriber *subscription *events))
+    (@*source-stream {:message "first"})
+    (.cancel ^Flow$Subscription @*subscription)
+    (is (= 1 @*cleanups))
+
+    (@*source-stream {:message "ignored"})
+    (is (= {:executed 0 :coalesced 0 :dropped 0 :pending 0}
+           (backpressure/metrics publisher)))
+
+    (.subscribe publisher (test-subscriber (atom nil) *second-events))
+    (is (= [[:error "This publisher supports only a single subscriber."]] @*second-events))))
@@ -0,0 +1,88 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.concurrency-limit-test
+  "Tests for the :request-concurrency-limit schema compile option."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]))
+
+(defn ^:private tracking-schema
+  [options *in-flight *max-in-flight]
+  (schema/compile
+    {:objects {:Item {:fields {:id {:type :Int}
+                               :detail {:type :String
+                                        :resolve (fn [_ _ item]
+                                                   (let [result (resolve/resolve-promise)
+                                                         n (swap! *in-flight inc)]
+                                                     (swap! *max-in-flight max n)
+                                                     (future
+                                                       (Thread/sleep 5)
+                                                       (swap! *in-flight dec)
+                                                       (resolve/deliver! result (str "detail " (:id item))))
+                                                     result))}
+                               :boom {:type :String
+                                      :resolve (fn [_ _ _]
+                                                 (throw (IllegalStateException. "Boom!")))}}}}
+     :queries {:items {:type '(list :Item)
+                       :args {:count {:type :Int}}
+                       :resolve (fn [_ args _]
+                                  (map #(hash-map :id %) (range (:count args))))}}}
+    options))
+
+(defn ^:private expected-items
+  [n]
+  {:data {:items (mapv #(hash-map :id % :detail (str "detail " %)) (range n))}})
+
+(deftest outstanding-resolvers-are-bounded
+  (let [*in-flight (atom 0)
+        *max-in-flight (atom 0)
+        schema (tracking-schema {:request-concurrency-limit 4} *in-flight *max-in-flight)
+        result (lacinia/execute schema "{ items(count: 50) { id detail }}" nil nil)]
+    (is (= (expected-items 50)
+           (update-in result [:data :items] #(mapv (partial into {}) %))))
+    (is (<= 1 @*max-in-flight 4))))
+
+(deftest unbounded-by-default
+  (let [*in-flight (atom 0)
+        *max-in-flight (atom 0)
+        schema (tracking-schema nil *in-flight *max-in-flight)
+        result (lacinia/execute schema "{ items(count: 50) { id detail }}" nil nil)]
+    (is (= (expected-items 50)
+           (update-in result [:data :items] #(mapv (partial into {}) %))))
+    (is (< 4 @*max-in-flight))))
+
+(deftest limit-of-one-is-serial
+  (let [*in-flight (atom 0)
+        *max-in-flight (atom 0)
+        schema (tracking-schema {:request-concurrency-limit 1} *in-flight *max-in-flight)
+        result (lacinia/execute schema "{ items(count: 10) { id detail }}" nil nil)]
+    (is (= (expected-items 10)
+           (update-in result [:data :items] #(mapv (partial into {}) %))))
+    (is (= 1 @*max-in-flight))))
+
+(deftest deferred-resolver-exception-fails-request
+  ;; With a limit of one, boom is invoked immediately for the first item, but deferred for the second;
+  ;; either way, the exception fails the request.
+  (let [schema (tracking-schema {:request-concurrency-limit 1} (atom 0) (atom 0))]
+    (is (thrown-with-msg? Exception #"Boom!"
+                          (lacinia/execute schema "{ items(count: 2) { boom }}" nil nil)))
+    (is (thrown-with-msg? Exception #"Boom!"
+                          (lacinia/execute schema "{ items(count: 2) { detail boom }}" nil nil)))))
+
+(deftest limit-must-be-positive
+  (is (thrown-with-msg? Exception #"do not conform to spec"
+                        (schema/compile {:queries {}} {:request-concurrency-limit 0}))))
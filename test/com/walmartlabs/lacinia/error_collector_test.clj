@@ -0,0 +1,63 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.error-collector-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.lacinia.select-utils :as su]))
+
+(deftest preserves-order-and-indexes-paths
+  (let [collector (su/error-collector)]
+    (is (= [] @collector))
+    (su/add-error! collector {:message "first" :path [:a 0]})
+    (su/add-error! collector {:message "second"})
+    (su/add-error! collector {:message "third" :path [:a 1 :b]})
+    (is (= ["first" "second" "third"] (map :message @collector)))
+    (is (su/error-at-path? collector [:a 0]))
+    (is (su/error-at-path? collector [:a 1 :b]))
+    (is (not (su/error-at-path? collector [:a 1])))))
+
+(deftest concurrent-additions
+  (let [collector (su/error-collector)
+        futures (doall
+                  (for [t (range 8)]
+                    (future
+                      (dotimes [i 500]
+                        (su/add-error! collector {:message "fail" :path [t i]})))))]
+    (run! deref futures)
+    (is (= 4000 (count @collector)))
+    (is (every? #(su/error-at-path? collector [% 499]) (range 8)))))
+
+(deftest atoms-remain-supported
+  (let [*errors (atom [])]
+    (su/add-error! *errors {:message "fail" :path [:x]})
+    (is (= [{:message "fail" :path [:x]}] @*errors))
+    (is (su/error-at-path? *errors [:x]))
+    (is (not (su/error-at-path? *errors [:y])))))
+
+(deftest resolver-error-suppresses-non-null-error
+  (let [compiled-schema (schema/compile
+                          {:objects {:Item {:fields {:name {:type '(non-null String)
+                                                            :resolve (fn [_ _ _]
+                                                                       (resolve/resolve-as nil {:message "Unavailable."}))}}}}
+                           :queries {:items {:type '(list :Item)
+                                             :resolve (fn [_ _ _] (repeat 1000 {}))}}})
+        {:keys [data errors]} (lacinia/execute compiled-schema "{ items { name } }" nil nil)]
+    (is (= (repeat 1000 nil) (:items data)))
+    (is (= 1000 (count errors)))
+    (is (= #{"Unavailable."} (set (map :message errors))))
+    (is (= [:items 999 :name] (-> errors last :path)))))
@@ -0,0 +1,174 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.field-cache-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.field-cache :as field-cache]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
+    [com.walmartlabs.lacinia.parser.schema :refer [parse-schema]]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(def ^:private sdl
+  "enum CacheScope { PUBLIC PRIVATE }
+
+  directive @cached(maxAge: Int!, scope: CacheScope = PUBLIC) on FIELD_DEFINITION
+
+  type Product {
+    id: Int
+    price(currency: String): Int @cached(maxAge: 60)
+  }
+
+  type Query {
+    product(id: Int): Product @cached(maxAge: 60)
+    cart: [Int] @cached(maxAge: 60, scope: PRIVATE)
+    config: String @cached(maxAge: 0)
+    slow: String @cached(maxAge: 60)
+    broken: String @cached(maxAge: 60)
+  }")
+
+(defn ^:private compile-schema
+  [*calls options]
+  (let [record (fn [k] (swap! *calls update k (fnil inc 0)))]
+    (-> (parse-schema sdl)
+        (assoc-in [:objects :Query :fields :product :resolve]
+                  (fn [_ {:keys [id]} _]
+                    (record :product)
+                    {:id id}))
+        (assoc-in [:objects :Product :fields :price :resolve]
+                  (fn [_ {:keys [currency]} {:keys [id]}]
+                    (record :price)
+                    (if (= "EUR" currency) (* 2 id) id)))
+        (assoc-in [:objects :Query :fields :cart :resolve]
+                  (fn [context _ _]
+                    (record :cart)
+                    [(:user-id context)]))
+        (assoc-in [:objects :Query :fields :config :resolve]
+                  (fn [_ _ _]
+                    (record :config)
+                    "config"))
+        (assoc-in [:objects :Query :fields :slow :resolve]
+                  (fn [_ _ _]
+                    (record :slow)
+                    (let [result (resolve/resolve-promise)]
+                      (future
+                        (Thread/sleep 50)
+                        (resolve/deliver! result "done"))
+                      result)))
+        (assoc-in [:objects :Query :fields :broken :resolve]
+                  (fn [_ _ _]
+                    (record :broken)
+                    (Thread/sleep 20)
+                    (throw (IllegalStateException. "Broken!"))))
+        (schema/compile (merge {:field-cache {:parent-key :id
+                                              :private-key :user-id}}
+                               options)))))
+
+(defn ^:private execute
+  ([compiled-schema query]
+   (execute compiled-schema query nil))
+  ([compiled-schema query context]
+   (simplify (lacinia/execute compiled-schema query nil context))))
+
+(deftest caches-across-requests
+  (let [*calls (atom {})
+        compiled-schema (compile-schema *calls nil)]
+    (dotimes [_ 3]
+      (is (= {:data {:product {:id 3 :price 3 :euros 6}}}
+             (execute compiled-schema "{ product(id: 3) { id price euros: price(currency: \"EUR\") } }"))))
+    (is (= {:data {:product {:id 4 :price 4}}}
+           (execute compiled-schema "{ product(id: 4) { id price } }")))
+    (is (= {:product 2 :price 3} @*calls))))
+
+(deftest expired-values-are-resolved-again
+  (let [*calls (atom {})
+        compiled-schema (compile-schema *calls nil)]
+    (dotimes [_ 2]
+      (execute compiled-schema "{ config }"))
+    (is (= {:config 2} @*calls))))
+
+(deftest private-scope
+  (let [*calls (atom {})
+        compiled-schema (compile-schema *calls nil)]
+    (is (= {:data {:cart [1]}} (execute compiled-schema "{ cart }" {:user-id 1})))
+    (is (= {:data {:cart [2]}} (execute compiled-schema "{ cart }" {:user-id 2})))
+    (is (= {:data {:cart [1]}} (execute compiled-schema "{ cart }" {:user-id 1})))
+    (is (= {:data {:cart [nil]}} (execute compiled-schema "{ cart }")))
+    (is (= {:data {:cart [nil]}} (execute compiled-schema "{ cart }")))
+    (is (= {:cart 4} @*calls))))
+
+(deftest concurrent-misses-share-resolution
+  (let [*calls (atom {})
+        compiled-schema (compile-schema *calls nil)
+        results (->> (range 10)
+                     (mapv (fn [_] (future (execute compiled-schema "{ slow }"))))
+                     (mapv deref))]
+    (is (every? #(= {:data {:slow "done"}} %) results))
+    (is (= {:slow 1} @*calls))))
+
+(deftest concurrent-misses-share-exceptions
+  (let [*calls (atom {})
+        compiled-schema (compile-schema *calls nil)
+        results (->> (range 5)
+                     (mapv (fn [_] (future (execute compiled-schema "{ broken }"))))
+                     (mapv deref))]
+    (is (apply = results))
+    (is (= {:data {:broken nil}
+            :errors [{:message "Exception in resolver for `Query/broken': Broken!"
+                      :locations [{:line 1 :column 3}]
+                      :path [:broken]}]}
+           (first results)))
+    (is (= 1 (:broken @*calls)))))
+
+(deftest field-directives-apply-to-cached-values
+  (let [*calls (atom {})
+        ;; Only identified users may see a product.
+        authorize (fn [_ resolver]
+                    (fn [context args value]
+                      (if (:user-id context)
+                        (resolver context args value)
+                        (resolve/resolve-as nil {:message "Not authorized."}))))
+        compiled-schema (compile-schema *calls {:apply-field-directives authorize})]
+    (is (= {:data {:product {:id 1}}}
+           (execute compiled-schema "{ product(id: 1) { id } }" {:user-id 1})))
+    (is (= {:data {:product nil}
+            :errors [{:message "Not authorized."
+                      :locations [{:line 1 :column 3}]
+                      :path [:product]
+                      :extensions {:arguments {:id 1}}}]}
+           (execute compiled-schema "{ product(id: 1) { id } }")))
+    (is (= {:product 1} @*calls))))
+
+(deftest bounded-store
+  (let [store (field-cache/in-memory-store 2)]
+    (field-cache/store! store :a 1 60000)
+    (field-cache/store! store :b 2 60000)
+    (is (= 1 (field-cache/fetch store :a nil)))
+    (field-cache/store! store :c 3 60000)
+    (is (= [1 nil 3] (map #(field-cache/fetch store % nil) [:a :b :c])))))
+
+(deftest reports-hits-and-misses
+  (let [*outcomes (atom [])
+        listener (reify instrumentation/Instrumentation
+                   (begin [_ _ data] data)
+                   (end [_ phase state outcome]
+                     (when (= :cache phase)
+                       (swap! *outcomes conj [(:field-name state) (:hit outcome)]))))
+        compiled-schema (compile-schema (atom {}) {:instrumentation listener})]
+    (dotimes [_ 2]
+      (execute compiled-schema "{ product(id: 1) { id } }"))
+    (is (= [[:Query/product false] [:Query/product true]] @*outcomes))))
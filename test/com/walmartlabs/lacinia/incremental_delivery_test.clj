@@ -0,0 +1,143 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.incremental-delivery-test
+  "Tests for the @defer and @stream directives."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private slow
+  [value]
+  (let [result (resolve/resolve-promise)]
+    (future
+      (Thread/sleep 20)
+      (resolve/deliver! result value))
+    result))
+
+(def ^:private compiled-schema
+  (schema/compile
+    {:objects {:Person {:fields {:id {:type '(non-null Int)}
+                                 :name {:type :String}
+                                 :bio {:type :String
+                                       :resolve (fn [_ _ person]
+                                                  (slow (str "Bio of " (:name person))))}
+                                 :required {:type '(non-null String)
+                                            :resolve (fn [_ _ _] nil)}
+                                 :friends {:type '(list :Person)
+                                           :resolve (fn [_ _ _]
+                                                      [{:id 2 :name "Bob"}
+                                                       {:id 3 :name "Carol"}
+                                                       {:id 4 :name "Dave"}])}}}}
+     :queries {:person {:type :Person
+                        :resolve (fn [_ _ _]
+                                   {:id 1 :name "Alice"})}}}))
+
+(defn ^:private execute-incremental
+  ([query]
+   (execute-incremental query nil))
+  ([query variables]
+   (let [*payloads (atom [])
+         done (promise)]
+     (lacinia/execute-parsed-query-incremental (parser/parse-query compiled-schema query)
+                                               variables
+                                               nil
+                                               (fn [payload]
+                                                 (swap! *payloads conj payload)
+                                                 (when-not (:hasNext payload)
+                                                   (deliver done true))))
+     (is (true? (deref done 1000 false)) "all payloads were delivered")
+     (simplify @*payloads))))
+
+(deftest defer-inline-fragment
+  (let [[initial & more] (execute-incremental "{ person { name ... on Person @defer(label: \"bio\") { bio } } }")]
+    (is (= {:data {:person {:name "Alice"}}
+            :hasNext true}
+           initial))
+    (is (= [{:incremental [{:data {:bio "Bio of Alice"}
+                            :label "bio"
+                            :path [:person]}]
+             :hasNext false}]
+           more))))
+
+(deftest defer-named-fragment
+  (let [[initial & more] (execute-incremental "{ person { id ...Bio @defer } } fragment Bio on Person { name bio }")]
+    (is (= {:data {:person {:id 1}}
+            :hasNext true}
+           initial))
+    (is (= [{:incremental [{:data {:bio "Bio of Alice"
+                                   :name "Alice"}
+                            :path [:person]}]
+             :hasNext false}]
+           more))))
+
+(deftest defer-disabled-by-if-argument
+  (is (= [{:data {:person {:bio "Bio of Alice"
+                           :name "Alice"}}}]
+         (execute-incremental "query ($d: Boolean) { person { name ... on Person @defer(if: $d) { bio } } }"
+                              {:d false}))))
+
+(deftest directives-ignored-without-incremental-delivery
+  (is (= {:data {:person {:bio "Bio of Alice"
+                          :friends [{:name "Bob"} {:name "Carol"} {:name "Dave"}]
+                          :name "Alice"}}}
+         (simplify
+           (lacinia/execute compiled-schema
+                            "{ person { name ... on Person @defer { bio } friends @stream(initialCount: 1) { name } } }"
+                            nil nil)))))
+
+(deftest stream-list-field
+  (let [[initial & more] (execute-incremental "{ person { friends @stream(initialCount: 1, label: \"f\") { name } } }")]
+    (is (= {:data {:person {:friends [{:name "Bob"}]}}
+            :hasNext true}
+           initial))
+    (is (= #{{:items [{:name "Carol"}] :path [:person :friends 1] :label "f"}
+             {:items [{:name "Dave"}] :path [:person :friends 2] :label "f"}}
+           (->> more (mapcat :incremental) set)))
+    (is (= [true false] (map :hasNext more)))))
+
+(deftest nested-defer-within-stream
+  (let [[initial & more] (execute-incremental "{ person { friends @stream(initialCount: 2) { name ... on Person @defer { bio } } } }")]
+    (is (= {:data {:person {:friends [{:name "Bob"} {:name "Carol"}]}}
+            :hasNext true}
+           initial))
+    (is (= #{{:data {:bio "Bio of Bob"} :path [:person :friends 0]}
+             {:data {:bio "Bio of Carol"} :path [:person :friends 1]}
+             {:items [{:name "Dave"}] :path [:person :friends 2]}
+             {:data {:bio "Bio of Dave"} :path [:person :friends 2]}}
+           (->> more (mapcat :incremental) set)))
+    (is (false? (-> more last :hasNext)))))
+
+(deftest errors-in-deferred-fragment
+  (let [[initial & more] (execute-incremental "{ person { name ... on Person @defer { id required } } }")]
+    (is (= {:data {:person {:name "Alice"}}
+            :hasNext true}
+           initial))
+    (is (= [{:incremental [{:data nil
+                            :errors [{:locations [{:column 43
+                                                   :line 1}]
+                                      :message "Non-nullable field was null."
+                                      :path [:person :required]}]
+                            :path [:person]}]
+             :hasNext false}]
+           more))))
+
+(deftest negative-initial-count
+  (is (= [{:errors [{:extensions {:initial-count -1}
+                     :message "Argument initialCount of directive @stream may not be negative."}]}]
+         (execute-incremental "{ person { friends @stream(initialCount: -1) { name } } }"))))
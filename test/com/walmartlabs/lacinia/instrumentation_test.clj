@@ -0,0 +1,121 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.instrumentation-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.instrumentation :as instrumentation]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema])
+  (:import
+    (java.util.concurrent Executor RejectedExecutionException)))
+
+(defn ^:private recording-listener
+  [*events]
+  (reify instrumentation/Instrumentation
+
+    (begin [_ phase data]
+      (swap! *events conj [:begin phase (dissoc data :context :parsed-query)])
+      phase)
+
+    (end [_ phase state outcome]
+      (is (= phase state))
+      (swap! *events conj [:end phase (cond-> outcome
+                                        (:exception outcome) (update :exception ex-message)
+                                        (:result outcome) (update :result :data)
+                                        (:parsed-query outcome) (assoc :parsed-query true))]))))
+
+(defn ^:private compile-schema
+  [listener & {:as options}]
+  (schema/compile
+    {:objects {:Person {:fields {:name {:type :String}
+                                 :nickname {:type :String
+                                            :resolve (fn [_ _ _]
+                                                       (let [result (resolve/resolve-promise)]
+                                                         (future (resolve/deliver! result "Bart"))
+                                                         result))}
+                                 :age {:type :Int
+                                       :resolve (fn [_ _ _]
+                                                  (resolve/resolve-as nil {:message "Unknown."}))}}}}
+     :queries {:person {:type :Person
+                        :args {:id {:type :Int}}
+                        :resolve (fn [_ _ _]
+                                   {:name "Bartholomew"})}
+               :boom {:type :String
+                      :resolve (fn [_ _ _]
+                                 (throw (IllegalStateException. "Boom.")))}}}
+    (assoc options :instrumentation listener)))
+
+(deftest reports-each-phase
+  (let [*events (atom [])
+        compiled-schema (compile-schema (recording-listener *events))
+        result (lacinia/execute compiled-schema "query ($id: Int) { person(id: $id) { name nickname age } }" {:id 7} nil)]
+    (is (= {:person {:age nil :name "Bartholomew" :nickname "Bart"}}
+           (:data result)))
+    (is (= [[:begin :parse {:operation-name nil
+                            :query "query ($id: Int) { person(id: $id) { name nickname age } }"}]
+            [:end :parse {:parsed-query true}]
+            [:begin :prepare {:variables {:id 7}}]
+            [:end :prepare {:parsed-query true}]
+            [:begin :validate {}]
+            [:end :validate {:errors []}]
+            [:begin :execute {}]]
+           (take 7 @*events)))
+    (is (= [:end :execute {:result {:person {:age nil :name "Bartholomew" :nickname "Bart"}}}]
+           (last @*events)))
+    (is (= #{[:begin :resolve {:arguments {:id 7} :field-name :Query/person :path [:person]}]
+             [:end :resolve {:value {:name "Bartholomew"}}]
+             [:begin :resolve {:arguments nil :field-name :Person/nickname :path [:person :nickname]}]
+             [:end :resolve {:value "Bart"}]
+             [:begin :resolve {:arguments nil :field-name :Person/age :path [:person :age]}]
+             [:end :resolve {:value nil :errors [{:message "Unknown."}]}]}
+           (->> @*events
+                (filter #(= :resolve (second %)))
+                set)))))
+
+(deftest reports-failures
+  (let [*events (atom [])
+        compiled-schema (compile-schema (recording-listener *events))]
+    (lacinia/execute compiled-schema "{ person { name }" nil nil)
+    (is (= [:end :parse] (-> @*events last (subvec 0 2))))
+    (is (contains? (-> @*events last last) :exception))
+
+    (reset! *events [])
+    (lacinia/execute compiled-schema "{ person { name } } fragment Unused on Person { name }" nil nil)
+    (is (= [:validate 1] (let [[_ phase outcome] (last @*events)]
+                           [phase (-> outcome :errors count)])))
+
+    (reset! *events [])
+    (is (thrown? Exception (lacinia/execute compiled-schema "{ boom }" nil nil)))
+    (is (some #{[:end :resolve {:exception "Boom."}]} @*events))))
+
+(deftest reports-rejected-execution
+  (let [*events (atom [])
+        executor (reify Executor
+                   (execute [_ _]
+                     (throw (RejectedExecutionException. "Executor is full."))))
+        compiled-schema (compile-schema (recording-listener *events) :executor executor)]
+    (is (thrown? RejectedExecutionException (lacinia/execute compiled-schema "{ person { name } }" nil nil)))
+    (is (= [:end :execute {:exception "Executor is full."}]
+           (last @*events)))))
+
+(deftest compose-listeners
+  (let [*first (atom [])
+        *second (atom [])
+        compiled-schema (compile-schema (instrumentation/compose (recording-listener *first)
+                                                                 (recording-listener *second)))]
+    (lacinia/execute compiled-schema "{ person { name } }" nil nil)
+    (is (seq @*first))
+    (is (= @*first @*second))))
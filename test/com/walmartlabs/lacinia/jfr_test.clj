@@ -0,0 +1,81 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.jfr-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.jfr :as jfr]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema])
+  (:import
+    (java.io File)
+    (jdk.jfr Recording)
+    (jdk.jfr.consumer RecordedEvent RecordingFile)))
+
+(def ^:private compiled-schema
+  (schema/compile
+    {:objects {:Person {:fields {:name {:type :String}
+                                 :friends {:type '(list :Person)
+                                           :resolve (fn [_ _ _]
+                                                      (let [result (resolve/resolve-promise)]
+                                                        (future (resolve/deliver! result [{:name "Bob"}]))
+                                                        result))}}}}
+     :queries {:person {:type :Person
+                        :resolve (fn [_ _ _]
+                                   {:name "Alice"})}}}
+    {:instrumentation (jfr/instrumentation)}))
+
+(defn ^:private event-data
+  [^RecordedEvent event]
+  (let [type-name (-> event .getEventType .getName)]
+    (into {:type type-name}
+          (for [field ["operationName" "fieldName" "path" "errorCount" "failed"]
+                :when (.hasField event field)]
+            [(keyword field) (.getValue event field)]))))
+
+(defn ^:private record
+  [f]
+  (let [file (File/createTempFile "lacinia" ".jfr")]
+    (try
+      (with-open [recording (Recording.)]
+        (doseq [event ["Parse" "Prepare" "Validation" "Execution" "Resolve"]]
+          (-> recording
+              (.enable (str "com.walmartlabs.lacinia." event))
+              (.withThreshold java.time.Duration/ZERO)))
+        (.start recording)
+        (f)
+        (.stop recording)
+        (.dump recording (.toPath file)))
+      (->> (RecordingFile/readAllEvents (.toPath file))
+           (map event-data)
+           set)
+      (finally
+        (.delete file)))))
+
+(deftest emits-events
+  (let [events (record #(is (= {:data {:person {:friends [{:name "Bob"}]
+                                                 :name "Alice"}}}
+                               (lacinia/execute compiled-schema "query Friends { person { name friends { name } } }" nil nil))))]
+    (is (= #{{:type "com.walmartlabs.lacinia.Parse" :operationName "Friends"}
+             {:type "com.walmartlabs.lacinia.Prepare" :operationName "Friends"}
+             {:type "com.walmartlabs.lacinia.Validation" :operationName "Friends" :errorCount 0}
+             {:type "com.walmartlabs.lacinia.Execution" :operationName "Friends" :errorCount 0}
+             {:type "com.walmartlabs.lacinia.Resolve" :operationName "Friends" :fieldName "Query/person" :path "person" :failed false}
+             {:type "com.walmartlabs.lacinia.Resolve" :operationName "Friends" :fieldName "Person/friends" :path "person.friends" :failed false}}
+           (set (map #(dissoc % :operationType) events))))))
+
+(deftest no-events-when-not-recording
+  (is (= "Alice"
+         (get-in (lacinia/execute compiled-schema "{ person { name } }" nil nil) [:data :person :name]))))
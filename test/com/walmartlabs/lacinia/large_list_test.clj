@@ -0,0 +1,86 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.large-list-test
+  "Tests for the specialized handling of lists of scalars and of large lists of objects."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private compile-schema
+  [options]
+  (schema/compile
+    {:enums {:Color {:values [:RED :GREEN]}}
+     :objects {:Item {:fields {:id {:type '(non-null Int)}
+                               :label {:type 'String
+                                       :resolve (fn [_ _ {:keys [id]}]
+                                                  (str "#" id))}}}}
+     :queries {:ints {:type '(list Int)
+                      :resolve (fn [_ _ _] [1 2 3])}
+               :mixed {:type '(list Int)
+                       :resolve (fn [_ _ _] [1 "two" 3 nil (resolve/with-error 5 {:message "Five."})])}
+               :strict {:type '(list (non-null Int))
+                        :resolve (fn [_ _ _] [1 nil 3])}
+               :colors {:type '(list :Color)
+                        :resolve (fn [_ _ _] [:RED :GREEN :BLUE])}
+               :items {:type '(list :Item)
+                       :args {:count {:type 'Int}}
+                       :resolve (fn [_ {:keys [count]} _]
+                                  (map #(hash-map :id (when-not (= 777 %) %)) (range count)))}}}
+    options))
+
+(def ^:private compiled-schema (compile-schema nil))
+
+(defn ^:private q
+  [compiled-schema query]
+  (simplify (lacinia/execute compiled-schema query nil nil)))
+
+(deftest scalar-list
+  (is (= {:data {:ints [1 2 3]}}
+         (q compiled-schema "{ ints }"))))
+
+(deftest scalar-list-with-failures
+  (let [{:keys [data errors]} (q compiled-schema "{ mixed }")]
+    (is (= {:mixed [1 nil 3 nil 5]} data))
+    (is (= [[[:mixed 1] "Unable to serialize \"two\" as type `Int'."]
+            [[:mixed 4] "Five."]]
+           (map (juxt :path :message) errors)))))
+
+(deftest non-null-scalar-list
+  (let [{:keys [data errors]} (q compiled-schema "{ strict }")]
+    (is (= {:strict nil} data))
+    (is (= [[:strict 1]] (map :path errors)))))
+
+(deftest enum-list
+  (let [{:keys [data errors]} (q compiled-schema "{ colors }")]
+    (is (= {:colors [:RED :GREEN nil]} data))
+    (is (= [[:colors 2]] (map :path errors)))))
+
+(deftest parallel-selection-matches-sequential
+  (let [parallel-schema (compile-schema {:parallel-list-threshold 100})
+        query "{ items(count: 1000) { id label } }"
+        expected (q compiled-schema query)]
+    (is (= 1000 (-> expected :data :items count)))
+    (is (= "#999" (-> expected :data :items last :label)))
+    (is (= expected (q parallel-schema query)))))
+
+(deftest parallel-selection-errors
+  (let [parallel-schema (compile-schema {:parallel-list-threshold 100})
+        {:keys [data errors]} (q parallel-schema "{ items(count: 1000) { id } }")]
+    (is (nil? (-> data :items (nth 777))))
+    (is (= {:id 778} (-> data :items (nth 778))))
+    (is (= [[:items 777 :id]] (map :path errors)))))
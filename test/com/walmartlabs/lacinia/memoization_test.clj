@@ -0,0 +1,108 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.memoization-test
+  "Tests for per-request memoization of field resolvers."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.parser.schema :refer [parse-schema]]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private compile-schema
+  [*calls async?]
+  (let [user (fn [_ {:keys [id]} _]
+               (swap! *calls conj [:user id])
+               (let [value {:id id :name (str "User " id)}]
+                 (if async?
+                   (let [result (resolve/resolve-promise)]
+                     (future
+                       (Thread/sleep 10)
+                       (resolve/deliver! result value))
+                     result)
+                   value)))]
+    (schema/compile
+      {:objects {:User {:fields {:id {:type 'Int}
+                                 :name {:type 'String}
+                                 :manager {:type :User
+                                           :memoize true
+                                           :resolve (fn [_ _ {:keys [id]}]
+                                                      (swap! *calls conj [:manager id])
+                                                      {:id 100 :name "Boss"})}}}}
+       :queries {:user {:type :User
+                        :args {:id {:type 'Int}}
+                        :memoize true
+                        :resolve user}
+                 :plainUser {:type :User
+                             :args {:id {:type 'Int}}
+                             :resolve user}}})))
+
+(deftest aliases-with-same-arguments-share-resolution
+  (doseq [async? [false true]]
+    (let [*calls (atom [])
+          compiled-schema (compile-schema *calls async?)]
+      (is (= {:data {:a {:name "User 1"}
+                     :b {:id 1}
+                     :c {:name "User 2"}}}
+             (simplify (lacinia/execute compiled-schema "{ a: user(id: 1) { name } b: user(id: 1) { id } c: user(id: 2) { name } }" nil nil))))
+      (is (= [[:user 1] [:user 2]] (sort @*calls))))))
+
+(deftest repeated-through-fragments
+  (let [*calls (atom [])
+        compiled-schema (compile-schema *calls false)]
+    (is (= {:data {:user {:manager {:id 100 :name "Boss"}}}}
+           (simplify (lacinia/execute compiled-schema
+                                      "{ user(id: 1) { ... on User { manager { id } } ...M } } fragment M on User { manager { name } }"
+                                      nil nil))))
+    (is (= [[:user 1] [:manager 1]] @*calls))))
+
+(deftest scoped-to-request
+  (let [*calls (atom [])
+        compiled-schema (compile-schema *calls false)]
+    (dotimes [_ 2]
+      (lacinia/execute compiled-schema "{ user(id: 1) { name } }" nil nil))
+    (is (= [[:user 1] [:user 1]] @*calls))))
+
+(deftest fields-not-memoized-by-default
+  (let [*calls (atom [])
+        compiled-schema (compile-schema *calls false)]
+    (lacinia/execute compiled-schema "{ a: plainUser(id: 1) { name } b: plainUser(id: 1) { id } }" nil nil)
+    (is (= [[:user 1] [:user 1]] @*calls))))
+
+(deftest memoize-directive
+  (let [*count (atom 0)
+        compiled-schema (-> (parse-schema "directive @memoize on FIELD_DEFINITION
+                                          type Query { now: Int @memoize }")
+                            (assoc-in [:objects :Query :fields :now :resolve]
+                                      (fn [_ _ _] (swap! *count inc)))
+                            schema/compile)]
+    (is (= {:data {:a 1 :b 1}}
+           (simplify (lacinia/execute compiled-schema "{ a: now b: now }" nil nil))))
+    (is (= 1 @*count))))
+
+(deftest not-memoized-in-mutations
+  (let [*count (atom 0)
+        compiled-schema (schema/compile
+                          {:queries {:balance {:type 'Int
+                                               :resolve (constantly 0)}}
+                           :mutations {:charge {:type 'Int
+                                                :args {:id {:type 'Int}}
+                                                :memoize true
+                                                :resolve (fn [_ _ _]
+                                                           (swap! *count inc))}}})]
+    (is (= {:data {:a 1 :b 2}}
+           (simplify (lacinia/execute compiled-schema "mutation { a: charge(id: 1) b: charge(id: 1) }" nil nil))))
+    (is (= 2 @*count))))
@@ -0,0 +1,195 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.multiplexer-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.constants :as constants]
+    [com.walmartlabs.lacinia.multiplexer :as multiplexer]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private test-schema
+  "Returns a schema, and an atom of source streams (one per streamer invocation), a counter of
+  resolver invocations, and a counter of cleanups."
+  []
+  (let [*streams (atom [])
+        *resolves (atom 0)
+        *cleanups (atom 0)]
+    [(schema/compile
+       {:objects {:Event {:fields {:message {:type :String
+                                             :resolve (fn [context _ event]
+                                                        (swap! *resolves inc)
+                                                        (str (:message event) (:suffix context)))}}}}
+        :subscriptions {:events {:type :Event
+                                 :args {:topic {:type :String}}
+                                 :stream (fn [_ args source-stream]
+                                           (swap! *streams conj [(:topic args) source-stream])
+                                           #(swap! *cleanups inc))}}})
+     *streams
+     *resolves
+     *cleanups]))
+
+(defn ^:private subscribe
+  [mx compiled-schema query variables context]
+  (let [*results (atom [])
+        prepared-query (-> (parser/parse-query compiled-schema query)
+                           (parser/prepare-with-query-variables variables))
+        unsubscribe (multiplexer/subscribe mx
+                                           (assoc context constants/parsed-query-key prepared-query)
+                                           #(swap! *results conj (simplify %)))]
+    [*results unsubscribe]))
+
+(defn ^:private await-results
+  "Results are delivered asynchronously; waits until the atom contains n results."
+  [*results n]
+  (loop [attempts 100]
+    (when (and (< (count @*results) n)
+               (pos? attempts))
+      (Thread/sleep 10)
+      (recur (dec attempts))))
+  @*results)
+
+(def ^:private query "subscription ($topic: String) { events(topic: $topic) { message } }")
+
+(deftest identical-subscriptions-are-shared
+  (let [[compiled-schema *streams *resolves *cleanups] (test-schema)
+        mx (multiplexer/multiplexer)
+        subscribers (doall (repeatedly 3 #(subscribe mx compiled-schema query {:topic "news"} nil)))
+        [*other] (subscribe mx compiled-schema query {:topic "sports"} nil)]
+    (is (= ["news" "sports"] (map first @*streams)))
+    (is (= {:subscriptions 2 :subscribers 4} (multiplexer/stats mx)))
+
+    ((-> @*streams first second) {:message "first"})
+
+    (is (= [[{:data {:events {:message "first"}}}]]
+           (distinct (map #(await-results (first %) 1) subscribers))))
+    (is (= 1 @*resolves))
+    (is (= [] @*other))
+
+    ;; Unsubscribing leaves the stream active until the last subscriber leaves.
+    ((-> subscribers first second))
+    (is (zero? @*cleanups))
+
+    ((-> @*streams first second) {:message "second"})
+
+    (is (= 2 (count (await-results (-> subscribers last first) 2))))
+    (is (= 1 (-> subscribers first first deref count)))
+
+    (run! #((second %)) (rest subscribers))
+
+    (is (= 1 @*cleanups))
+    (is (= {:subscriptions 1 :subscribers 1} (multiplexer/stats mx)))))
+
+(deftest closing-the-source-stream
+  (let [[compiled-schema *streams _ *cleanups] (test-schema)
+        mx (multiplexer/multiplexer)
+        [*first] (subscribe mx compiled-schema query {:topic "news"} nil)
+        [*second] (subscribe mx compiled-schema query {:topic "news"} nil)]
+    ((-> @*streams first second) nil)
+    (is (= [nil] @*first @*second))
+    (is (= 1 @*cleanups))
+    (is (= {:subscriptions 0 :subscribers 0} (multiplexer/stats mx)))
+
+    ;; A new subscriber starts a new stream.
+    (subscribe mx compiled-schema query {:topic "news"} nil)
+    (is (= 2 (count @*streams)))))
+
+(deftest context-keys-separate-subscriptions
+  (let [[compiled-schema *streams] (test-schema)
+        mx (multiplexer/multiplexer {:context-keys [:suffix]})
+        [*a] (subscribe mx compiled-schema query {:topic "news"} {:suffix "!" :connection 1})
+        [*b] (subscribe mx compiled-schema query {:topic "news"} {:suffix "!" :connection 2})
+        [*c] (subscribe mx compiled-schema query {:topic "news"} {:suffix "?" :connection 3})]
+    (is (= 2 (count @*streams)))
+    (doseq [[_ source-stream] @*streams]
+      (source-stream {:message "hello"}))
+    (is (= [{:data {:events {:message "hello!"}}}] (await-results *a 1) (await-results *b 1)))
+    (is (= [{:data {:events {:message "hello?"}}}] (await-results *c 1)))))
+
+(deftest failing-subscriber-does-not-affect-others
+  (let [[compiled-schema *streams] (test-schema)
+        mx (multiplexer/multiplexer)
+        prepared-query (-> (parser/parse-query compiled-schema query)
+                           (parser/prepare-with-query-variables {:topic "news"}))
+        _ (multiplexer/subscribe mx {constants/parsed-query-key prepared-query}
+                                 (fn [_] (throw (IllegalStateException. "Closed."))))
+        [*results] (subscribe mx compiled-schema query {:topic "news"} nil)]
+    ((-> @*streams first second) {:message "first"})
+    (is (= [{:data {:events {:message "first"}}}] (await-results *results 1)))))
+
+(defn ^:private streaming-schema
+  "Returns a schema whose subscription uses the provided streamer."
+  [streamer]
+  (schema/compile
+    {:objects {:Event {:fields {:message {:type :String}}}}
+     :subscriptions {:events {:type :Event
+                              :args {:topic {:type :String}}
+                              :stream streamer}}}))
+
+(deftest slow-streamer-does-not-block-other-subscriptions
+  (let [*release (promise)
+        compiled-schema (streaming-schema (fn [_ {:keys [topic]} _]
+                                            (when (= "slow" topic)
+                                              @*release)
+                                            (constantly nil)))
+        mx (multiplexer/multiplexer)
+        slow (future (subscribe mx compiled-schema query {:topic "slow"} nil))]
+    (loop [attempts 100]
+      (when (and (zero? (:subscriptions (multiplexer/stats mx)))
+                 (pos? attempts))
+        (Thread/sleep 10)
+        (recur (dec attempts))))
+    ;; The slow streamer is still running; other subscriptions proceed.
+    (let [[_ unsubscribe] (deref (future (subscribe mx compiled-schema query {:topic "fast"} nil)) 1000 nil)]
+      (is (some? unsubscribe))
+      (when unsubscribe
+        (unsubscribe)))
+    (deliver *release true)
+    (is (some? @slow))
+    (is (= {:subscriptions 1 :subscribers 1} (multiplexer/stats mx)))))
+
+(deftest failing-streamer-is-rolled-back
+  (let [*invocations (atom 0)
+        compiled-schema (streaming-schema (fn [_ _ _]
+                                            (when (= 1 (swap! *invocations inc))
+                                              (throw (IllegalStateException. "Unavailable.")))
+                                            (constantly nil)))
+        mx (multiplexer/multiplexer)]
+    (is (thrown? Exception (subscribe mx compiled-schema query {:topic "news"} nil)))
+    (is (= {:subscriptions 0 :subscribers 0} (multiplexer/stats mx)))
+
+    ;; The next subscriber invokes the streamer again.
+    (subscribe mx compiled-schema query {:topic "news"} nil)
+    (is (= 2 @*invocations))
+    (is (= {:subscriptions 1 :subscribers 1} (multiplexer/stats mx)))))
+
+(deftest backpressure-metrics
+  (let [[compiled-schema *streams] (test-schema)
+        mx (multiplexer/multiplexer {:backpressure {:strategy :latest}})
+        [*a] (subscribe mx compiled-schema query {:topic "news"} nil)
+        [*b] (subscribe mx compiled-schema query {:topic "news"} nil)
+        source-stream (-> @*streams first second)]
+    (source-stream {:message "first"})
+    (is (= [{:data {:events {:message "first"}}}] (await-results *a 1) (await-results *b 1)))
+    (is (= {:subscriptions 1
+            :subscribers 2
+            :executed 1
+            :coalesced 0
+            :dropped 0
+            :pending 0}
+           (multiplexer/stats mx)))
+    (source-stream nil)
+    (is (= [{:data {:events {:message "first"}}} nil] (await-results *a 2)))))
@@ -0,0 +1,88 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.null-propagation-test
+  "Tests for propagation of nulls from non-nullable fields to the nearest nullable ancestor."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(def ^:private items
+  [{:id 1 :name "one"}
+   {:id 2}
+   {:id 3 :name "three"}])
+
+(def ^:private compiled-schema
+  (schema/compile
+    {:objects {:Item {:fields {:id {:type '(non-null Int)}
+                               :name {:type '(non-null String)}
+                               :self {:type :Item
+                                      :resolve (fn [_ _ item] item)}
+                               :strictSelf {:type '(non-null :Item)
+                                            :resolve (fn [_ _ item] item)}}}}
+     :queries {:items {:type '(list :Item)
+                       :resolve (fn [_ _ _] items)}
+               :strictItems {:type '(list (non-null :Item))
+                             :resolve (fn [_ _ _] items)}
+               :grid {:type '(list (list (non-null :Item)))
+                      :resolve (fn [_ _ _] [items (take 1 items)])}
+               :names {:type '(list (non-null String))
+                       :resolve (fn [_ _ _] ["a" nil "c"])}
+               :item {:type :Item
+                      :resolve (fn [_ _ _] (second items))}}}))
+
+(defn ^:private q
+  [query]
+  (simplify (lacinia/execute compiled-schema query nil nil)))
+
+(deftest nullable-list-element-is-nulled
+  (let [result (q "{ items { id name } }")]
+    (is (= {:items [{:id 1 :name "one"} nil {:id 3 :name "three"}]}
+           (:data result)))
+    (is (= [[:items 1 :name]] (->> result :errors (map :path))))))
+
+(deftest non-null-list-element-nulls-list
+  (is (= {:strictItems nil}
+         (:data (q "{ strictItems { id name } }")))))
+
+(deftest no-violations-leaves-list-unchanged
+  (is (= {:strictItems [{:id 1} {:id 2} {:id 3}]}
+         (:data (q "{ strictItems { id } }")))))
+
+(deftest propagates-through-nested-objects
+  (is (= {:item {:id 2 :self nil}}
+         (:data (q "{ item { id self { strictSelf { name } } } }"))))
+  (is (= {:item nil}
+         (:data (q "{ item { id strictSelf { strictSelf { name } } } }")))))
+
+(deftest propagates-through-fragments
+  (is (= {:item nil}
+         (:data (q "{ item { id ... on Item { name } } }"))))
+  (is (= {:item nil}
+         (:data (q "{ item { id ...F } } fragment F on Item { name }")))))
+
+(deftest nested-lists
+  (is (= {:grid [nil [{:id 1 :name "one"}]]}
+         (:data (q "{ grid { id name } }")))))
+
+(deftest scalar-list-with-null-element
+  (is (= {:names nil}
+         (:data (q "{ names }")))))
+
+(deftest root-field-nulls-data
+  (is (= {:items [{:id 1 :name "one"} nil {:id 3 :name "three"}]
+          :item nil}
+         (:data (q "{ items { id name } item { id name } }")))))
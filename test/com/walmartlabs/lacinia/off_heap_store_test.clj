@@ -0,0 +1,124 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.off-heap-store-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.off-heap-store :as off-heap-store]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.response-cache :as response-cache]
+    [com.walmartlabs.lacinia.schema :as schema])
+  (:import
+    (java.io File)
+    (java.nio ByteBuffer)
+    (java.nio.charset StandardCharsets)))
+
+(defn ^:private as-string
+  [^ByteBuffer buffer]
+  (when buffer
+    (let [bytes (byte-array (.remaining buffer))]
+      (.get buffer bytes)
+      (String. bytes StandardCharsets/UTF_8))))
+
+(defn ^:private response
+  "Returns a response whose JSON encoding is exactly 20 bytes."
+  [c]
+  {:data {:v (str c c c)}})
+
+(defn ^:private encoded
+  "The JSON encoding of (response c)."
+  [c]
+  (str "{\"data\":{\"v\":\"" c c c "\"}}"))
+
+(defn ^:private stored
+  [store k]
+  (as-string (response-cache/lookup-json store k)))
+
+(deftest stores-json
+  (let [store (off-heap-store/off-heap-store {:capacity 1024})]
+    (response-cache/save! store :k {:data {:name "Lacinia" :kind :LIBRARY}} [:t])
+    (is (= "{\"data\":{\"name\":\"Lacinia\",\"kind\":\"LIBRARY\"}}"
+           (as-string (response-cache/lookup-json store :k))))
+    ;; The original response can not be reproduced from the JSON.
+    (is (nil? (response-cache/lookup store :k)))
+    (is (.isReadOnly ^ByteBuffer (response-cache/lookup-json store :k)))
+    (is (nil? (response-cache/lookup-json store :missing)))
+
+    (response-cache/invalidate! store [:t])
+    (is (nil? (response-cache/lookup-json store :k)))
+    (is (= {:entries 0 :bytes 0 :capacity 1024} (response-cache/store-metrics store)))))
+
+(deftest ring-evicts-oldest
+  (let [store (off-heap-store/off-heap-store {:capacity 60})]
+    (is (= 20 (count (as-string (do
+                                  (response-cache/save! store :a (response "a") nil)
+                                  (response-cache/lookup-json store :a))))))
+    (response-cache/save! store :b (response "b") nil)
+    (response-cache/save! store :c (response "c") nil)
+    (is (= {:entries 3 :bytes 60 :capacity 60} (response-cache/store-metrics store)))
+
+    ;; Wraps around, reusing the space of :a
+    (response-cache/save! store :d (response "d") nil)
+    (is (nil? (stored store :a)))
+    (is (= [(encoded "b") (encoded "c") (encoded "d")]
+           (map #(stored store %) [:b :c :d])))
+
+    ;; Replacing a value writes it at the write position, which here is the old space of :b.
+    (response-cache/save! store :b (response "B") nil)
+    (is (= [(encoded "B") (encoded "c") (encoded "d")]
+           (map #(stored store %) [:b :c :d])))
+
+    (response-cache/save! store :e (response "e") nil)
+    (is (nil? (stored store :c)))
+    (is (= {:entries 3 :bytes 60 :capacity 60} (response-cache/store-metrics store)))))
+
+(deftest responses-do-not-span-segments
+  (let [store (off-heap-store/off-heap-store {:capacity 60
+                                              :segment-size 30})]
+    (response-cache/save! store :a (response "a") nil)
+    ;; Does not fit in the rest of the first segment
+    (response-cache/save! store :b (response "b") nil)
+    (response-cache/save! store :c (response "c") nil)
+    (is (nil? (stored store :a)))
+    (is (= [(encoded "b") (encoded "c")]
+           (map #(stored store %) [:b :c])))
+
+    ;; Too large for a segment
+    (response-cache/save! store :big {:data {:v (apply str (repeat 30 "x"))}} nil)
+    (is (nil? (stored store :big)))))
+
+(deftest memory-mapped-file
+  (let [file (File/createTempFile "lacinia" ".cache")]
+    (try
+      (let [store (off-heap-store/off-heap-store {:capacity 4096
+                                                  :path file})]
+        (response-cache/save! store :k (response "k") nil)
+        (is (= (encoded "k") (stored store :k)))
+        (is (= 4096 (.length file))))
+      (finally
+        (.delete file)))))
+
+(deftest response-cache-serves-bytes
+  (let [compiled-schema (schema/compile {:queries {:hello {:type :String
+                                                           :resolve (constantly "world")}}})
+        parsed-query (parser/parse-query compiled-schema "{ hello }")
+        cache (response-cache/response-cache {:store (off-heap-store/off-heap-store {:capacity 1024})})
+        *result (promise)]
+    (is (nil? (response-cache/cached-json cache parsed-query nil nil)))
+    (resolve/on-deliver! (response-cache/execute-parsed-query-async cache parsed-query nil nil) *result)
+    (deref *result 1000 nil)
+    (is (= "{\"data\":{\"hello\":\"world\"}}"
+           (as-string (response-cache/cached-json cache parsed-query nil nil))))
+    (is (= {:hits 1 :misses 1} (select-keys (response-cache/metrics cache) [:hits :misses])))))
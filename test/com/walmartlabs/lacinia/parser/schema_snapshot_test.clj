@@ -0,0 +1,91 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.parser.schema-snapshot-test
+  (:require
+    [clojure.java.io :as io]
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.parser.schema :as parser.schema]
+    [com.walmartlabs.lacinia.parser.schema-snapshot :as schema-snapshot]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.lacinia.util :as util]
+    [com.walmartlabs.test-utils :refer [execute]])
+  (:import
+    (java.io File)
+    (java.nio.file Files)
+    (java.nio.file.attribute FileAttribute)))
+
+(defn ^:private temp-dir
+  []
+  (-> (Files/createTempDirectory "lacinia" (make-array FileAttribute 0))
+      .toFile
+      (doto .deleteOnExit)))
+
+(deftest reuses-parsed-schema
+  (let [dir (temp-dir)
+        sdl (slurp (io/resource "sample_schema.sdl"))
+        file (schema-snapshot/snapshot-file dir sdl)]
+    (is (not (.exists file)))
+    (is (= (parser.schema/parse-schema sdl)
+           (schema-snapshot/parse-schema dir sdl)))
+    (is (.exists file))
+    ;; Prove that the second call reads the snapshot, rather than parsing the document.
+    (spit file (pr-str {:objects {:Snapshot {:fields {:id {:type 'ID}}}}}))
+    (is (= {:objects {:Snapshot {:fields {:id {:type 'ID}}}}}
+           (schema-snapshot/parse-schema dir sdl)))
+    (.delete file)))
+
+(deftest changed-document-is-parsed-again
+  (let [dir (temp-dir)
+        sdl "type Query { hello: String }"
+        sdl' "type Query { hello: String goodbye: String }"]
+    (schema-snapshot/parse-schema dir sdl)
+    (is (not= (schema-snapshot/snapshot-file dir sdl)
+              (schema-snapshot/snapshot-file dir sdl')))
+    (is (= (parser.schema/parse-schema sdl')
+           (schema-snapshot/parse-schema dir sdl')))
+    (run! #(.delete (schema-snapshot/snapshot-file dir %)) [sdl sdl'])))
+
+(deftest damaged-snapshot-is-replaced
+  (let [dir (temp-dir)
+        sdl "type Query { hello: String }"
+        file (schema-snapshot/snapshot-file dir sdl)]
+    (spit file "{:objects")
+    (is (= (parser.schema/parse-schema sdl)
+           (schema-snapshot/parse-schema dir sdl)))
+    (is (= (parser.schema/parse-schema sdl)
+           (read-string (slurp file))))
+    (.delete file)))
+
+(deftest resolvers-attached-after-loading
+  (let [dir (temp-dir)
+        sdl "type Query { hello: String }"
+        compile-schema #(-> (schema-snapshot/parse-schema dir sdl)
+                            (util/inject-resolvers {:Query/hello (constantly "world")})
+                            schema/compile)]
+    ;; The first compile writes the snapshot, the second reads it.
+    (is (= {:data {:hello "world"}}
+           (execute (compile-schema) "{ hello }")
+           (execute (compile-schema) "{ hello }")))
+    (.delete (schema-snapshot/snapshot-file dir sdl))))
+
+(deftest unwritable-directory-still-parses
+  (let [not-a-dir (File/createTempFile "lacinia" ".snapshot")
+        sdl "type Query { hello: String }"]
+    (try
+      (is (= (parser.schema/parse-schema sdl)
+             (schema-snapshot/parse-schema not-a-dir sdl)))
+      (is (not (.exists (schema-snapshot/snapshot-file not-a-dir sdl))))
+      (finally
+        (.delete not-a-dir)))))
@@ -251,6 +251,29 @@
             [:sub-kind :inline-fragment]]
            @*facts))))
 
+(deftest protocol-methods-return-shared-values
+  (let [me (fn [context _ _]
+             (let [s (executor/selection context)]
+               (note :same-selections (identical? (selection/selections s) (selection/selections s))
+                     :same-field (identical? (selection/field s) (selection/field s))
+                     :same-type (identical? (selection/root-value-type s) (selection/root-value-type s))
+                     ;; The compiled schema is still available, to navigate from the field to its type.
+                     :field-type (-> s selection/field selection/root-type selection/type-name)
+                     :fragment-fields (->> (selection/selections s)
+                                           (filter #(= :inline-fragment (selection/selection-kind %)))
+                                           (mapcat selection/selections)
+                                           (map #(-> % selection/field selection/field-name)))))
+             (schema/tag-with-type {:name "Lacinia" :userId 101} :LegacyUser))
+        schema (compile-sdl-schema "selection/interface-types.sdl"
+                                   {:Query/me me})]
+    (execute schema "{ me { name ... on LegacyUser { userId } } }")
+    (is (= [[:same-selections true]
+            [:same-field true]
+            [:same-type true]
+            [:field-type :User]
+            [:fragment-fields [:userId]]]
+           @*facts))))
+
 (deftest access-to-union-directives
   (let [me (fn [context _ _]
              (let [t (root-type context)]
@@ -0,0 +1,170 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.response-cache-test
+  (:require
+    [clojure.data.json :as json]
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.response-cache :as response-cache]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private test-schema
+  [*calls]
+  (schema/compile
+    {:queries {:product {:type :String
+                         :args {:id {:type :Int}}
+                         :resolve (fn [_ {:keys [id]} _]
+                                    (swap! *calls inc)
+                                    (resolve/with-cache-tags (str "Product " id)
+                                                             (str "product:" id)))}
+               :gated {:type :String
+                       :resolve (fn [context _ _]
+                                  (swap! *calls inc)
+                                  (let [result (resolve/resolve-promise)]
+                                    (future
+                                      @(:gate context)
+                                      (resolve/deliver! result (resolve/with-cache-tags "Gated" "gated")))
+                                    result))}
+               :broken {:type :String
+                        :resolve (fn [_ _ _]
+                                   (swap! *calls inc)
+                                   (resolve/resolve-as nil {:message "Failed"}))}}}))
+
+(defn ^:private execute
+  [cache compiled-schema query variables context]
+  (let [*result (promise)]
+    (resolve/on-deliver! (response-cache/execute-parsed-query-async cache
+                                                                    (parser/parse-query compiled-schema query)
+                                                                    variables
+                                                                    context)
+                         *result)
+    (simplify (deref *result 1000 ::timeout))))
+
+(def ^:private product-query "query ($id: Int) { product(id: $id) }")
+
+(deftest cache-hit-skips-execution
+  (let [*calls (atom 0)
+        compiled-schema (test-schema *calls)
+        cache (response-cache/response-cache)]
+    (dotimes [_ 2]
+      (is (= {:data {:product "Product 1"}}
+             (execute cache compiled-schema product-query {:id 1} nil))))
+    (is (= 1 @*calls))
+
+    (is (= {:data {:product "Product 2"}}
+           (execute cache compiled-schema product-query {:id 2} nil)))
+    (is (= 2 @*calls))
+    (is (= {:hits 1 :misses 2 :entries 2}
+           (dissoc (response-cache/metrics cache) :bytes)))))
+
+(deftest responses-with-errors-are-not-cached
+  (let [*calls (atom 0)
+        compiled-schema (test-schema *calls)
+        cache (response-cache/response-cache)]
+    (dotimes [_ 2]
+      (execute cache compiled-schema "{ broken }" nil nil))
+    (is (= 2 @*calls))
+    (is (zero? (:entries (response-cache/metrics cache))))))
+
+(deftest invalidate-by-tag
+  (let [*calls (atom 0)
+        compiled-schema (test-schema *calls)
+        cache (response-cache/response-cache)]
+    (execute cache compiled-schema product-query {:id 1} nil)
+    (execute cache compiled-schema product-query {:id 2} nil)
+
+    (response-cache/invalidate-tags! cache "product:1")
+
+    (is (= 1 (:entries (response-cache/metrics cache))))
+    (execute cache compiled-schema product-query {:id 1} nil)
+    (execute cache compiled-schema product-query {:id 2} nil)
+    (is (= 3 @*calls))))
+
+(deftest invalidation-during-execution
+  (let [*calls (atom 0)
+        compiled-schema (test-schema *calls)
+        cache (response-cache/response-cache)
+        gate (promise)
+        *result (promise)]
+    (resolve/on-deliver! (response-cache/execute-parsed-query-async cache
+                                                                    (parser/parse-query compiled-schema "{ gated }")
+                                                                    nil
+                                                                    {:gate gate})
+                         *result)
+    (response-cache/invalidate-tags! cache "gated")
+    (deliver gate true)
+
+    (is (= {:data {:gated "Gated"}} (simplify (deref *result 1000 ::timeout))))
+    ;; The response may be stale, so it was not cached.
+    (is (= 0 (:entries (response-cache/metrics cache))))
+    (is (= {:data {:gated "Gated"}} (execute cache compiled-schema "{ gated }" nil {:gate gate})))
+    (is (= 2 @*calls))
+    (is (= 1 (:entries (response-cache/metrics cache))))))
+
+(deftest context-key-and-skip
+  (let [*calls (atom 0)
+        compiled-schema (test-schema *calls)
+        cache (response-cache/response-cache {:context-key (fn [context]
+                                                             (if (:user context)
+                                                               ::response-cache/skip
+                                                               (:locale context)))})]
+    (execute cache compiled-schema product-query {:id 1} {:locale "en"})
+    (execute cache compiled-schema product-query {:id 1} {:locale "fr"})
+    (execute cache compiled-schema product-query {:id 1} {:locale "en"})
+    (is (= 2 @*calls))
+
+    (dotimes [_ 2]
+      (execute cache compiled-schema product-query {:id 1} {:user "jane"}))
+    (is (= 4 @*calls))))
+
+(deftest in-memory-store-bounds
+  (let [store (response-cache/in-memory-store {:max-entries 3
+                                               :max-bytes 10
+                                               :weigh count})]
+    (response-cache/save! store :a "aaaa" [:t1])
+    (response-cache/save! store :b "bbbb" [:t2])
+    ;; :a is now the most recently used
+    (is (= "aaaa" (response-cache/lookup store :a)))
+    (response-cache/save! store :c "cccc" [:t1])
+    (is (nil? (response-cache/lookup store :b)))
+    (is (= {:entries 2 :bytes 8} (response-cache/store-metrics store)))
+
+    ;; Too large to cache at all
+    (response-cache/save! store :d "ddddddddddd" nil)
+    (is (nil? (response-cache/lookup store :d)))
+
+    (dotimes [i 3]
+      (response-cache/save! store i "x" nil))
+    (is (= 3 (:entries (response-cache/store-metrics store))))
+
+    (response-cache/invalidate! store [:t1])
+    (is (nil? (response-cache/lookup store :c)))))
+
+(deftest estimated-size-is-close-to-encoded-length
+  (let [response {:data {:products [{:id 1 :name "Product 1" :color :RED :price 19.95}
+                                    {:id 2 :name "Product 2" :color :BLUE :price nil}]
+                         :total 2}}
+        encoded-length (count (json/write-str response))
+        estimate (response-cache/estimate-size response)]
+    (is (< (* 0.8 encoded-length) estimate (* 1.2 encoded-length)))))
+
+(deftest unlimited-bytes-skips-weighing
+  (let [store (response-cache/in-memory-store {:max-bytes nil
+                                               :weigh (fn [_] (throw (IllegalStateException. "Weighed.")))})]
+    (response-cache/save! store :a {:data {:product "Product 1"}} nil)
+    (is (= {:data {:product "Product 1"}} (response-cache/lookup store :a)))
+    (is (= {:entries 1 :bytes 0} (response-cache/store-metrics store)))))
@@ -0,0 +1,83 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.result-map-test
+  "Tests for ResultMap, and its use for the results of field-only selection sets."
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.schema :as schema])
+  (:import
+    (com.walmartlabs.lacinia ResultMap)))
+
+(defn ^:private result-map
+  [& kvs]
+  (ResultMap. (object-array (take-nth 2 kvs))
+              (object-array (take-nth 2 (rest kvs)))))
+
+(deftest behaves-as-a-persistent-map
+  (let [m (result-map :b 1 :a 2)]
+    (is (= {:a 2 :b 1} m))
+    (is (= m {:a 2 :b 1}))
+    (is (= (hash {:a 2 :b 1}) (hash m)))
+    (is (= [:b :a] (keys m)))
+    (is (= [1 2] (vals m)))
+    (is (= 2 (:a m)))
+    (is (= ::missing (get m :c ::missing)))
+    (is (= [:b :a :c] (keys (assoc m :c 3))))
+    (is (= {:a 2 :b 10} (assoc m :b 10)))
+    (is (= [:a] (keys (dissoc m :b))))
+    (is (identical? m (dissoc m :c)))
+    (is (= {:b 2 :a 3} (reduce-kv #(assoc %1 %2 (inc %3)) {} m)))
+    (is (= {:x 1} (meta (with-meta m {:x 1}))))
+    (is (= {} (empty m)))
+    (is (nil? (seq (empty m))))))
+
+(defn ^:private compile-schema
+  []
+  (schema/compile
+    {:objects {:Item {:fields {:id {:type :Int}
+                               :name {:type :String}
+                               :rank {:type :Int}}}}
+     :queries {:items {:type '(list :Item)
+                       :resolve (fn [_ _ _]
+                                  [{:id 1 :name "one" :rank 10}
+                                   {:id 2 :name "two" :rank 20}])}}}))
+
+(deftest field-only-selections-use-result-map
+  (let [schema (compile-schema)
+        result (lacinia/execute schema "{ items { rank id name } }" nil nil)
+        item (-> result :data :items first)]
+    (is (instance? ResultMap (:data result)))
+    (is (instance? ResultMap item))
+    (is (= [:rank :id :name] (keys item)))
+    (is (= {:items [{:id 1 :name "one" :rank 10}
+                    {:id 2 :name "two" :rank 20}]}
+           (:data result)))))
+
+(deftest disabled-selections-are-omitted
+  (let [schema (compile-schema)
+        result (lacinia/execute schema "query ($skip: Boolean) { items { id name @skip(if: $skip) rank } }"
+                                {:skip true} nil)
+        item (-> result :data :items first)]
+    (is (instance? ResultMap item))
+    (is (= [:id :rank] (keys item)))))
+
+(deftest fragments-are-merged-in-order
+  (let [schema (compile-schema)
+        result (lacinia/execute schema "{ items { id ... on Item { name } ...F } } fragment F on Item { rank }" nil nil)]
+    (is (= [:id :name :rank] (-> result :data :items first keys)))
+    (is (= {:items [{:id 1 :name "one" :rank 10}
+                    {:id 2 :name "two" :rank 20}]}
+           (:data result)))))
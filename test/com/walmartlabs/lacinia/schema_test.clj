@@ -180,3 +180,63 @@
     (is (= {:data {:__typename :Mutation}}
            (execute compiled-schema "mutation { __typename }")))))
 
+
+(defn ^:private chain-schema
+  "A schema of n object types, each referring to the next; type T<k> refers to an undefined type instead."
+  [n invalid]
+  {:objects (into {}
+                  (for [i (range n)]
+                    [(keyword (str "T" i))
+                     {:fields {:name {:type 'String}
+                               :next {:type (if (contains? invalid i)
+                                              :Undefined
+                                              (keyword (str "T" (mod (inc i) n))))}}}]))
+   :queries {:first {:type :T0
+                     :resolve (constantly {:name "zero"
+                                           :next {:name "one"}})}}})
+
+(deftest parallel-compile
+  (let [compiled-schema (schema/compile (chain-schema 50 #{}) {:parallel-compile-threshold 10})]
+    (is (= {:data {:first {:name "zero"
+                           :next {:name "one"
+                                  :next nil}}}}
+           (execute compiled-schema "{ first { name next { name next { name } } } }"))))
+
+  (testing "the exception reported for invalid types is the same as when compiling sequentially"
+    (let [message (fn [options]
+                    (try
+                      (schema/compile (chain-schema 50 #{7 23 41}) options)
+                      nil
+                      (catch Exception e
+                        (ex-message e))))]
+      (is (some? (message nil)))
+      (is (= (message nil)
+             (message {:parallel-compile-threshold 10}))))))
+
+(deftest null-producer-reachability
+  (let [compiled-schema (schema/compile
+                          {:interfaces {:Named {:fields {:name {:type 'String}}}}
+                           :objects {:A {:fields {:b {:type :B}}}
+                                     :B {:fields {:c {:type '(list :C)}}}
+                                     :C {:fields {:id {:type '(non-null ID)}}}
+                                     :D {:implements [:Named]
+                                         :fields {:name {:type 'String}
+                                                  :e {:type :E}}}
+                                     :E {:fields {:d {:type :D}
+                                                  :named {:type :Named}}}
+                                     :F {:fields {:e {:type :E}
+                                                  :a {:type :A}}}}
+                           :queries {:a {:type :A
+                                         :resolve (constantly nil)}}})
+        reachable? #(schema/can-reach-null-producer? compiled-schema (get compiled-schema %))]
+    (is (= {:A true
+            :B true
+            :C true
+            :D false
+            :E false
+            :F true
+            :Named false
+            :String false}
+           (into {}
+                 (map (juxt identity reachable?))
+                 [:A :B :C :D :E :F :Named :String])))))
@@ -15,6 +15,7 @@
 (ns com.walmartlabs.lacinia.selections-tests
   (:require
     [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.constants :as constants]
     [com.walmartlabs.lacinia.parser :as parser]
     [com.walmartlabs.lacinia.executor :as executor]
     [com.walmartlabs.test-utils :refer [compile-schema execute]]
@@ -331,3 +332,76 @@
          }"
                        {:int_var 42
                         :string_var "samwise"}))))
+
+(defn ^:private first-field-context
+  "A context for resolving the first field of the query."
+  [query variables]
+  (let [parsed-query (-> (parser/parse-query default-schema query)
+                         (parser/prepare-with-query-variables variables))]
+    (-> (executor/parsed-query->context parsed-query)
+        (assoc constants/selection-key (-> parsed-query :selections first)))))
+
+(deftest projection-by-concrete-type
+  (is (= {:human #{:name :homePlanet}
+          :droid #{:name :primary_function}}
+         (executor/projection
+           (first-field-context
+             "query {
+                hero {
+                  name
+                  __typename
+                  friends { name }
+                  ... on human { homePlanet }
+                  ... ifDroid
+                }
+              }
+
+              fragment ifDroid on droid { primary_function }"
+             nil))))
+
+  (is (= {:human #{:id :name}}
+         (executor/projection (first-field-context "{ human { id nickname: name friends { id } } }" nil))))
+
+  (is (= {:Query #{}}
+         (executor/projection (parse-and-wrap "{ hero { name } }")))))
+
+(deftest look-ahead-is-cached
+  (let [context (first-field-context "{ human { name friends { name } } }" nil)]
+    (is (identical? (executor/selections-tree context)
+                    (executor/selections-tree context)))
+    (is (identical? (executor/selections-seq context)
+                    (executor/selections-seq (assoc context :other-key true))))))
+
+(deftest look-ahead-is-cached-per-selection
+  ;; Distinct selections may share a sub-selections vector (for example, the empty vector).
+  (let [parsed-query (parser/parse-query default-schema "{ hero { name } human { name } }")
+        [hero human] (:selections parsed-query)
+        human' (assoc human :selections (:selections hero))
+        context-for (fn [selection]
+                      {constants/parsed-query-key parsed-query
+                       constants/selection-key selection})]
+    (is (= {:human #{:name} :droid #{:name}}
+           (executor/projection (context-for hero))))
+    (is (= {:human #{:name}}
+           (executor/projection (context-for human'))))))
+
+(deftest look-ahead-reflects-variables
+  (let [query "query ($friends: Boolean!) { human { name friends @include(if: $friends) { name } } }"
+        parsed-query (parser/parse-query default-schema query)
+        context-for (fn [friends?]
+                      (let [prepared (parser/prepare-with-query-variables parsed-query {:friends friends?})]
+                        {constants/parsed-query-key prepared
+                         constants/selection-key (-> prepared :selections first)}))]
+    (is (executor/selects-field? (context-for true) :human/friends))
+    (is (not (executor/selects-field? (context-for false) :human/friends)))
+    (is (executor/selects-field? (context-for true) :human/friends))))
+
+(deftest look-ahead-cache-does-not-affect-value
+  (let [parsed-query (parser/parse-query default-schema "{ human { name friends { name } } }")
+        before (pr-str (dissoc parsed-query constants/schema-key))
+        context (-> (executor/parsed-query->context parsed-query)
+                    (assoc constants/selection-key (-> parsed-query :selections first)))]
+    (executor/selections-tree context)
+    (parser/query-key parsed-query)
+    (is (not (contains? parsed-query constants/look-ahead-key)))
+    (is (= before (pr-str (dissoc parsed-query constants/schema-key))))))
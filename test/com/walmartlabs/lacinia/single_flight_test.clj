@@ -0,0 +1,136 @@
+; Copyright (c) 2026-present Walmart, Inc.
+;
+; Licensed under the Apache License, Version 2.0 (the "License")
+; you may not use this file except in compliance with the License.
+; You may obtain a copy of the License at
+;
+;     http://www.apache.org/licenses/LICENSE-2.0
+;
+; Unless required by applicable law or agreed to in writing, software
+; distributed under the License is distributed on an "AS IS" BASIS,
+; WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+; See the License for the specific language governing permissions and
+; limitations under the License.
+
+(ns com.walmartlabs.lacinia.single-flight-test
+  (:require
+    [clojure.test :refer [deftest is]]
+    [com.walmartlabs.lacinia.executor :as executor]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
+    [com.walmartlabs.lacinia.schema :as schema]
+    [com.walmartlabs.lacinia.single-flight :as single-flight]
+    [com.walmartlabs.lacinia.tracing :as tracing]
+    [com.walmartlabs.test-utils :refer [simplify]]))
+
+(defn ^:private test-schema
+  "Field resolvers do not complete until the test delivers the pending results."
+  [*pending]
+  (let [resolver (fn [context args _]
+                   (let [result (resolve/resolve-promise)]
+                     (swap! *pending conj [result (str (:greeting args) (:suffix context))])
+                     result))]
+    (schema/compile
+      {:queries {:hello {:type :String
+                         :args {:greeting {:type :String}}
+                         :resolve resolver}}
+       :mutations {:touch {:type :String
+                           :args {:greeting {:type :String}}
+                           :resolve resolver}}})))
+
+(defn ^:private pending-count
+  "Executions start asynchronously; waits for n resolvers to be invoked, then briefly for any others."
+  [*pending n]
+  (loop [attempts 100]
+    (when (and (< (count @*pending) n)
+               (pos? attempts))
+      (Thread/sleep 10)
+      (recur (dec attempts))))
+  (Thread/sleep 20)
+  (count @*pending))
+
+(defn ^:private complete-all!
+  [*pending]
+  (doseq [[result value] @*pending]
+    (resolve/deliver! result value))
+  (reset! *pending []))
+
+(defn ^:private execute
+  [coalescer parsed-query variables context]
+  (let [*result (promise)]
+    (resolve/on-deliver! (single-flight/execute-parsed-query-async coalescer parsed-query variables context)
+                         *result)
+    *result))
+
+(defn ^:private result
+  [*result]
+  (simplify (deref *result 1000 ::timeout)))
+
+(deftest identical-queries-share-an-execution
+  (let [*pending (atom [])
+        compiled-schema (test-schema *pending)
+        parsed-query (parser/parse-query compiled-schema "query ($greeting: String) { hello(greeting: $greeting) }")
+        coalescer (single-flight/coalescer)
+        results (doall (repeatedly 3 #(execute coalescer parsed-query {:greeting "hi"} nil)))
+        other (execute coalescer parsed-query {:greeting "bye"} nil)]
+    (is (= 2 (pending-count *pending 2)))
+
+    (complete-all! *pending)
+
+    (is (= [{:data {:hello "hi"}}] (distinct (map result results))))
+    (is (= {:data {:hello "bye"}} (result other)))
+    (is (= {:requests 4 :executions 2 :coalescing-ratio 0.5}
+           (single-flight/metrics coalescer)))
+
+    ;; Once complete, a new request executes the query again.
+    (let [again (execute coalescer parsed-query {:greeting "hi"} nil)]
+      (is (= 1 (pending-count *pending 1)))
+      (complete-all! *pending)
+      (is (= {:data {:hello "hi"}} (result again))))))
+
+(deftest context-key-separates-requests
+  (let [*pending (atom [])
+        compiled-schema (test-schema *pending)
+        parsed-query (parser/parse-query compiled-schema "{ hello(greeting: \"hi\") }")
+        coalescer (single-flight/coalescer {:context-key :suffix})
+        first-result (execute coalescer parsed-query nil {:suffix "!" :request-id 1})
+        second-result (execute coalescer parsed-query nil {:suffix "!" :request-id 2})
+        third-result (execute coalescer parsed-query nil {:suffix "?" :request-id 3})]
+    (is (= 2 (pending-count *pending 2)))
+    (complete-all! *pending)
+    (is (= {:data {:hello "hi!"}} (result first-result) (result second-result)))
+    (is (= {:data {:hello "hi?"}} (result third-result)))))
+
+(deftest only-queries-are-coalesced
+  (let [*pending (atom [])
+        compiled-schema (test-schema *pending)
+        parsed-query (parser/parse-query compiled-schema "mutation { touch(greeting: \"hi\") }")
+        coalescer (single-flight/coalescer)
+        results (doall (repeatedly 2 #(execute coalescer parsed-query nil nil)))]
+    (is (= 2 (pending-count *pending 2)))
+    (complete-all! *pending)
+    (is (= [{:data {:touch "hi"}}] (distinct (map result results))))
+    (is (= 0 (:requests (single-flight/metrics coalescer))))))
+
+(deftest cancellable-requests-are-not-coalesced
+  (let [*pending (atom [])
+        compiled-schema (test-schema *pending)
+        parsed-query (parser/parse-query compiled-schema "{ hello(greeting: \"hi\") }")
+        coalescer (single-flight/coalescer)]
+    (dotimes [_ 2]
+      (execute coalescer parsed-query nil (executor/enable-cancellation nil)))
+    (is (= 2 (pending-count *pending 2)))
+    (complete-all! *pending)))
+
+(deftest traced-requests-are-not-coalesced
+  (let [*pending (atom [])
+        compiled-schema (test-schema *pending)
+        parsed-query (parser/parse-query compiled-schema "{ hello(greeting: \"hi\") }")
+        coalescer (single-flight/coalescer)
+        untraced (execute coalescer parsed-query nil nil)
+        traced (execute coalescer parsed-query nil (tracing/enable-tracing nil))]
+    (is (= 2 (pending-count *pending 2)))
+    (complete-all! *pending)
+    (is (nil? (:extensions (result untraced))))
+    (is (some? (get-in (result traced) [:extensions :tracing])))
+    (is (= 1 (:requests (single-flight/metrics coalescer))))))
@@ -16,6 +16,9 @@
   (:require
     [clojure.test :refer [deftest is]]
     [com.walmartlabs.lacinia :as lacinia]
+    [com.walmartlabs.lacinia.executor :as executor]
+    [com.walmartlabs.lacinia.parser :as parser]
+    [com.walmartlabs.lacinia.resolve :as resolve]
     [com.walmartlabs.lacinia.schema :as schema]))
 
 (defn create-schema
@@ -60,3 +63,50 @@
     (is (= {:errors [{:message "Too slow!"}]} result))
     ;; Allow for some overhead ...
     (is (<= 50 elapsed 60))))
+
+(deftest timeout-cancels-execution
+  (let [*nested-count (atom 0)
+        *saw-cancel (promise)
+        schema (schema/compile
+                 {:objects {:Item {:fields {:name {:type :String
+                                                   :resolve (fn [_ _ item]
+                                                              (swap! *nested-count inc)
+                                                              (:name item))}}}}
+                  :queries {:items {:type '(list :Item)
+                                    :resolve (fn [context _ _]
+                                               (let [result (resolve/resolve-promise)]
+                                                 (future
+                                                   (Thread/sleep 100)
+                                                   (deliver *saw-cancel (executor/cancelled? context))
+                                                   (resolve/deliver! result [{:name "a"} {:name "b"}]))
+                                                 result))}}})
+        result (lacinia/execute schema "{ items { name } }" nil nil {:timeout-ms 20})]
+    (is (= {:errors [{:message "Query execution timed out."}]} result))
+    (is (true? (deref *saw-cancel 1000 ::timeout)))
+    ;; Give any (incorrectly) scheduled work a chance to run.
+    (Thread/sleep 50)
+    (is (= 0 @*nested-count))))
+
+(deftest explicit-cancellation
+  (let [*release (promise)
+        schema (schema/compile
+                 {:queries {:wait {:type :String
+                                   :resolve (fn [_ _ _]
+                                              (let [result (resolve/resolve-promise)]
+                                                (future
+                                                  (resolve/deliver! result @*release))
+                                                result))}}})
+        context (executor/enable-cancellation nil)
+        parsed (parser/parse-query schema "{ wait }")
+        *result (promise)]
+    (is (false? (executor/cancelled? context)))
+    (resolve/on-deliver! (lacinia/execute-parsed-query-async parsed nil context) *result)
+    (executor/cancel! context)
+    (is (true? (executor/cancelled? context)))
+    (deliver *release "ok")
+    (is (= {:errors [{:message "Query execution was cancelled."}]}
+           (deref *result 1000 ::timeout)))))
+
+(deftest cancellation-not-enabled
+  (is (false? (executor/cancelled? nil)))
+  (is (nil? (executor/cancel! {}))))
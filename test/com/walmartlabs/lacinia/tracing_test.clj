@@ -100,3 +100,22 @@
                (let [durations (->> (get-in result [:extensions :tracing :execution :resolvers])
                                     (mapv :duration))]
                  (is (= 6 (count durations)))))))
+
+(deftest sampled-tracing-omits-default-resolvers
+  (let [result (q "{ hare: root(delay: 5) { simple slow { simple }}
+                     tortoise: root(delay: 50) { simple slow { simple }}
+                   }"
+                  (tracing/enable-sampled-tracing nil 1.0))]
+    (reporting result
+               (is (= #{[:hare] [:hare :slow] [:tortoise] [:tortoise :slow]}
+                      (->> (get-in result [:extensions :tracing :execution :resolvers])
+                           (map :path)
+                           set)))
+               (is (= #{:startOffset :duration}
+                      (-> result :extensions :tracing :parsing keys set))))))
+
+(deftest sampled-tracing-respects-sample-rate
+  (is (= {:data {:root {:simple "fast!"}}}
+         (q "{ root(delay: 5) { simple }}" (tracing/enable-sampled-tracing nil 0.0))))
+  (is (every? ::tracing/enabled?
+              (repeatedly 20 #(tracing/enable-sampled-tracing {} 1.0)))))